@@ -0,0 +1,91 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Broadphase backed by a dynamic AABB tree. Because leaves hold fat bounds, bodies at
+ * rest cost no tree updates, and the same tree answers region queries and raycasts
+ * for aiming and mouse picking.
+ */
+public class AabbTreeBroadphase implements Broadphase {
+    private final DynamicAabbTree tree = new DynamicAabbTree();
+    
+    // Leaf proxy and owner of every handle in the tree, indexed by handle
+    private int[] proxies = new int[64];
+    private GameObject[] tracked = new GameObject[64];
+    
+    @Override
+    public void findPairs(PhysicsWorld world, PairBuffer pairs, double margin) {
+        if (tracked.length < world.bodies.length) {
+            proxies = Arrays.copyOf(proxies, world.bodies.length);
+            tracked = Arrays.copyOf(tracked, world.bodies.length);
+        }
+        
+        // Only active bodies have leaves; add, remove and refit them to match the world
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        for (int i = 0; i < tracked.length; i++) {
+            GameObject body = i < world.size && world.active[i] ? world.bodies[i] : null;
+            if (tracked[i] != body) {
+                if (tracked[i] != null) {
+                    tree.destroyProxy(proxies[i]);
+                }
+                if (body != null) {
+                    proxies[i] = tree.createProxy(i, x[i], y[i], x[i] + width[i], y[i] + height[i]);
+                }
+                tracked[i] = body;
+            } else if (body != null) {
+                tree.moveProxy(proxies[i], x[i], y[i], x[i] + width[i], y[i] + height[i]);
+            }
+        }
+        
+        // Query the tree with each dynamic body's bounds grown by the margin. Static and
+        // kinematic bodies are only targets: a pair of dynamic bodies is reported by its
+        // lower handle, and a dynamic body and a target by the dynamic body
+        for (int i = 0; i < world.size; i++) {
+            if (tracked[i] == null || world.isPassive(i)) continue;
+            
+            int found = tree.query(x[i] - margin, y[i] - margin,
+                    x[i] + width[i] + margin, y[i] + height[i] + margin);
+            for (int k = 0; k < found; k++) {
+                int other = tree.getResult(k);
+                if (other > i || (other != i && world.isPassive(other))) {
+                    pairs.add(i, other);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the bodies overlapping the region in the tree.
+     */
+    @Override
+    public int query(PhysicsWorld world, double minX, double minY, double maxX, double maxY) {
+        return tree.query(minX, minY, maxX, maxY);
+    }
+    
+    @Override
+    public int getResult(int k) {
+        return tree.getResult(k);
+    }
+    
+    /**
+     * Adds every active object overlapping the given region to the results.
+     * Reflects object positions as of the last physics update.
+     */
+    public void query(double minX, double minY, double maxX, double maxY, List<GameObject> results) {
+        int found = tree.query(minX, minY, maxX, maxY);
+        for (int k = 0; k < found; k++) {
+            results.add(tracked[tree.getResult(k)]);
+        }
+    }
+    
+    /**
+     * Returns the first active object hit by the segment from (x1, y1) to (x2, y2), or null.
+     * Reflects object positions as of the last physics update.
+     */
+    public GameObject raycast(double x1, double y1, double x2, double y2) {
+        int hit = tree.raycast(x1, y1, x2, y2);
+        return hit < 0 ? null : tracked[hit];
+    }
+}
@@ -0,0 +1,91 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that a physics step allocates nothing once it has warmed up. Each broadphase
+ * gets its own world, and the same scenario is replayed in it round after round: the
+ * level is set up, a word is flung into it, and the world is stepped while the blocks
+ * settle and the letters hit them. After the warm-up rounds the thread's allocated bytes
+ * are measured across a few more rounds. A replayed round takes the same paths as the
+ * last, so an allocation in the step shows up in every one of them, while the JVM's own
+ * bookkeeping when a background compile lands doesn't; the check fails if even the
+ * quietest measured round allocated. Exits with status 1 if any broadphase did. Run with:
+ * java game.AllocationCheck [level] [warm-up rounds] [measured rounds] [steps per round]
+ */
+public class AllocationCheck {
+    private static final String[] BROADPHASES = {"brute", "grid", "sap", "tree"};
+    private static final long SEED = 42;
+    
+    /**
+     * Runs the check.
+     */
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int warmUpRounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int measuredRounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 300;
+        
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM can't measure allocation per thread");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        
+        boolean failed = false;
+        for (String name : BROADPHASES) {
+            PhysicsWorld world = new PhysicsWorld(PhysicsEngine.createBroadphase(name));
+            
+            // The parallel narrowphase allocates its fork/join tasks, so keep to one thread
+            world.setParallelThreshold(Integer.MAX_VALUE);
+            
+            Simulation simulation = new Simulation(world, 60);
+            simulation.setAutoAdvance(false);
+            
+            long allocated = Long.MAX_VALUE;
+            int mostAwake = 0;
+            for (int round = 0; round < warmUpRounds + measuredRounds; round++) {
+                // Re-seeding gives every round the same layout and the same throw. Setting
+                // up the level and creating the letters allocate, so they stay outside the
+                // measurement
+                world.setSeed(SEED);
+                simulation.setupLevel(level);
+                simulation.flingWord("WORD");
+                
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (int step = 0; step < steps; step++) {
+                    PhysicsEngine.update(world, simulation.getStepSeconds());
+                    mostAwake = Math.max(mostAwake, countAwake(world));
+                }
+                if (round >= warmUpRounds) {
+                    allocated = Math.min(allocated, threads.getCurrentThreadAllocatedBytes() - before);
+                }
+            }
+            
+            System.out.printf("%-6s %d bodies, up to %d awake, %d bytes allocated in %d steps%s%n",
+                    name, world.getBodyCount(), mostAwake, allocated, steps,
+                    allocated == 0 ? "" : "  FAILED");
+            failed |= allocated != 0;
+        }
+        
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Counts the bodies that are active and not asleep, so the output shows that the
+     * measured steps weren't just the all-asleep fast path.
+     */
+    private static int countAwake(PhysicsWorld world) {
+        int count = 0;
+        for (int i = 0; i < world.size; i++) {
+            if (world.active[i] && !world.sleeping[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,7 +1,7 @@
 package game;
 
 import java.awt.*;
-import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
 /**
  * Represents a block that can be knocked down by letters.
@@ -10,109 +10,60 @@ public class Block extends GameObject {
     private boolean hit = false;
     private int health = 100;
     
-    /**
-     * Constructs a block game object.
-     */
-    public Block(double x, double y, double width, double height) {
-        super(x, y, width, height, width * height * 0.1);
-        this.color = new Color(150, 100, 50);  // Brown wooden blocks
-    }
+    // Images shared by every block, created on first draw so a headless simulation
+    // never loads AWT
+    private static BlockSprites sprites;
+    
+    // The block's crack pattern, and its image with the damage step and color it shows
+    private final int crackPattern;
+    private BufferedImage sprite;
+    private int spriteStep = -1;
+    private int spriteRgb;
+    
+    // Collision category of blocks
+    public static final int CATEGORY = 1 << 1;
     
     /**
-     * Updates the block's position and status.
+     * Constructs a block game object.
      */
-    @Override
-    public void update(double deltaTime) {
-        if (!active) return;
-        
-        super.update(deltaTime);
+    public Block(PhysicsWorld world, double x, double y, double width, double height) {
+        super(world, x, y, width, height, width * height * 0.1);
+        this.rgb = 0x966432;  // Brown wooden blocks
         
         // Limit maximum velocity to prevent blocks from moving too fast
-        double maxVelocity = 300.0;
-        if (Math.abs(velocityX) > maxVelocity) {
-            velocityX = Math.signum(velocityX) * maxVelocity;
-        }
-        if (Math.abs(velocityY) > maxVelocity) {
-            velocityY = Math.signum(velocityY) * maxVelocity;
-        }
+        world.maxSpeed[handle] = 300.0;
         
-        // Blocks that fall off the bottom of the screen are deactivated
-        if (y > 500) {
-            active = false;
-        }
+        world.type[handle] = CollisionDispatch.TYPE_BLOCK;
+        world.category[handle] = CATEGORY;
+        
+        // Cracks follow the world's seed, so a replayed level cracks the same way
+        crackPattern = (int) Math.floorMod(world.getSeed() * 31 + world.id[handle],
+                (long) BlockSprites.CRACK_PATTERNS);
     }
     
     /**
-     * Custom collision handling for block-to-block interactions
+     * Draws the block as a single copy of the image for its damage, given as its health.
      */
     @Override
-    public boolean collidesWith(GameObject other) {
-        // Standard collision check using rectangles
-        if (!super.collidesWith(other)) {
-            return false;
+    void draw(Graphics2D g, int x, int y, int width, int height, int rgb, int state) {
+        if (sprites == null) {
+            sprites = new BlockSprites(BlockSprites.DEFAULT_CAPACITY);
         }
-        
-        // For block-to-block collisions, add some additional handling
-        if (other instanceof Block) {
-            // Calculate penetration depth more accurately for blocks
-            double overlapX = (this.width + other.getWidth()) / 2 - 
-                Math.abs((this.x + this.width/2) - (other.getX() + other.getWidth()/2));
-            double overlapY = (this.height + other.getHeight()) / 2 - 
-                Math.abs((this.y + this.height/2) - (other.getY() + other.getHeight()/2));
-            
-            // If blocks are barely touching, don't consider it a collision
-            // This helps prevent blocks from getting stuck together
-            if (overlapX < 0.5 || overlapY < 0.5) {
-                return false;
-            }
+        int step = BlockSprites.step(state);
+        if (sprite == null || step != spriteStep || rgb != spriteRgb) {
+            sprite = sprites.get(g.getDeviceConfiguration(), width, height, rgb, state, crackPattern);
+            spriteStep = step;
+            spriteRgb = rgb;
         }
-        
-        return true;
+        BlockSprites.draw(g, sprite, x, y);
     }
     
     /**
-     * Renders the block on the screen.
+     * Gets the block's health, which its image shows.
      */
     @Override
-    public void render(Graphics2D g) {
-        if (!active) return;
-        
-        // Save original color
-        Color originalColor = g.getColor();
-        
-        // Draw block with color dependent on health
-        if (hit) {
-            float healthPercent = health / 100f;
-            g.setColor(new Color(
-                Math.min(255, color.getRed() + (int)((255 - color.getRed()) * (1 - healthPercent))),
-                Math.max(0, color.getGreen() - (int)(color.getGreen() * (1 - healthPercent))),
-                Math.max(0, color.getBlue() - (int)(color.getBlue() * (1 - healthPercent)))
-            ));
-        } else {
-            g.setColor(color);
-        }
-        
-        g.fillRect((int)x, (int)y, (int)width, (int)height);
-        
-        // Draw block outline
-        g.setColor(Color.BLACK);
-        g.drawRect((int)x, (int)y, (int)width, (int)height);
-        
-        // If hit, draw cracks or damage effects
-        if (hit && health < 80) {
-            g.setColor(Color.BLACK);
-            int cracks = 5 - (health / 20);
-            for (int i = 0; i < cracks; i++) {
-                int startX = (int)(x + Math.random() * width);
-                int startY = (int)(y + Math.random() * height);
-                int endX = (int)(startX + (Math.random() * 20 - 10));
-                int endY = (int)(startY + (Math.random() * 20 - 10));
-                g.drawLine(startX, startY, endX, endY);
-            }
-        }
-        
-        // Restore original color
-        g.setColor(originalColor);
+    int renderState() {
+        return health;
     }
     
     /**
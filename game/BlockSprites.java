@@ -0,0 +1,173 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Pre-drawn block images, one per size, color, damage step and crack pattern, so a
+ * block draws as a single copy however damaged it is. Health is rounded down to steps
+ * of HEALTH_STEP points, and blocks crack in one of CRACK_PATTERNS patterns, so blocks
+ * of the same size and color share images at every level of damage. The cache holds
+ * at most a fixed number of images and drops the least recently used one when it is
+ * full. It is meant to be used from the thread that renders.
+ */
+class BlockSprites {
+    // Images kept by default before the least recently used one is dropped
+    static final int DEFAULT_CAPACITY = 256;
+    
+    // Health points per damage step
+    static final int HEALTH_STEP = 5;
+    
+    // Cracks can reach this far past a block's edges, so images have this margin
+    static final int CRACK_REACH = 10;
+    
+    // Blocks below this health show cracks
+    static final int CRACK_HEALTH = 80;
+    
+    // Number of different ways a block can crack
+    static final int CRACK_PATTERNS = 8;
+    
+    private final int capacity;
+    
+    // Images in order of use, least recently used first
+    private final LinkedHashMap<Key, BufferedImage> sprites = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /**
+     * What an image was drawn for.
+     */
+    private static final class Key {
+        private final int width, height, rgb, step, crackPattern;
+        
+        /**
+         * Constructs a key for a block image.
+         */
+        Key(int width, int height, int rgb, int step, int crackPattern) {
+            this.width = width;
+            this.height = height;
+            this.rgb = rgb;
+            this.step = step;
+            this.crackPattern = crackPattern;
+        }
+        
+        /**
+         * Checks whether another key is for the same image.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return width == other.width && height == other.height && rgb == other.rgb
+                    && step == other.step && crackPattern == other.crackPattern;
+        }
+        
+        /**
+         * Gets a hash code consistent with equals.
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, rgb, step, crackPattern);
+        }
+    }
+    
+    /**
+     * Constructs an empty cache holding at most the given number of images.
+     */
+    BlockSprites(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sprite cache capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Gets the damage step a health value is drawn as.
+     */
+    static int step(int health) {
+        return health / HEALTH_STEP;
+    }
+    
+    /**
+     * Gets the image of a block, drawing it first if it isn't cached. The block's top
+     * left corner is CRACK_REACH pixels in from the image's.
+     */
+    BufferedImage get(GraphicsConfiguration gc, int width, int height, int rgb, int health, int crackPattern) {
+        int step = step(health);
+        
+        // Blocks without cracks look alike, whatever their pattern would be
+        Key key = new Key(width, height, rgb, step, step * HEALTH_STEP < CRACK_HEALTH ? crackPattern : 0);
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = draw(gc, key);
+            sprites.put(key, sprite);
+            if (sprites.size() > capacity) {
+                Iterator<BufferedImage> eldest = sprites.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return sprite;
+    }
+    
+    /**
+     * Draws a block image with the block's top left corner at the given position.
+     */
+    static void draw(Graphics2D g, BufferedImage sprite, int x, int y) {
+        g.drawImage(sprite, x - CRACK_REACH, y - CRACK_REACH, null);
+    }
+    
+    /**
+     * Draws a block image.
+     */
+    private static BufferedImage draw(GraphicsConfiguration gc, Key key) {
+        // The outline is drawn one pixel past the width and height
+        int imageWidth = key.width + 1 + 2 * CRACK_REACH;
+        int imageHeight = key.height + 1 + 2 * CRACK_REACH;
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+                : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(CRACK_REACH, CRACK_REACH);
+            
+            // Draw block with color dependent on health
+            int health = key.step * HEALTH_STEP;
+            float healthPercent = Math.min(health, 100) / 100f;
+            int red = (key.rgb >> 16) & 0xff;
+            int green = (key.rgb >> 8) & 0xff;
+            int blue = key.rgb & 0xff;
+            g.setColor(new Color(
+                Math.min(255, red + (int)((255 - red) * (1 - healthPercent))),
+                Math.max(0, green - (int)(green * (1 - healthPercent))),
+                Math.max(0, blue - (int)(blue * (1 - healthPercent)))
+            ));
+            g.fillRect(0, 0, key.width, key.height);
+            
+            // Draw block outline
+            g.setColor(Color.BLACK);
+            g.drawRect(0, 0, key.width, key.height);
+            
+            // Draw cracks from the block's pattern, so each new crack adds to the ones
+            // before it
+            if (health < CRACK_HEALTH) {
+                Random random = new Random(key.crackPattern);
+                int cracks = 5 - (health / 20);
+                for (int i = 0; i < cracks; i++) {
+                    int startX = (int)(random.nextDouble() * key.width);
+                    int startY = (int)(random.nextDouble() * key.height);
+                    int endX = (int)(startX + (random.nextDouble() * 20 - 10));
+                    int endY = (int)(startY + (random.nextDouble() * 20 - 10));
+                    g.drawLine(startX, startY, endX, endY);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
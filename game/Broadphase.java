@@ -0,0 +1,25 @@
+package game;
+
+/**
+ * Finds candidate collision pairs so the narrowphase only has to test nearby bodies.
+ */
+public interface Broadphase {
+    /**
+     * Adds every pair of active bodies whose bounds, grown by the margin on every side,
+     * may overlap to the buffer. Pairs are body handles; they may be reported in any
+     * order and more than once.
+     */
+    void findPairs(PhysicsWorld world, PairBuffer pairs, double margin);
+    
+    /**
+     * Finds every body whose bounds, as of the last findPairs call, may overlap the
+     * given region. Returns the number found; read them with getResult. Bodies may be
+     * found more than once, and may have been deactivated since.
+     */
+    int query(PhysicsWorld world, double minX, double minY, double maxX, double maxY);
+    
+    /**
+     * Gets the handle of a body found by the last query.
+     */
+    int getResult(int k);
+}
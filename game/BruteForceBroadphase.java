@@ -0,0 +1,34 @@
+package game;
+
+/**
+ * Reports every pair of active bodies. This is the original O(n^2) behavior and
+ * is kept as a reference to compare the other broadphases against.
+ */
+public class BruteForceBroadphase implements Broadphase {
+    @Override
+    public void findPairs(PhysicsWorld world, PairBuffer pairs, double margin) {
+        boolean[] active = world.active;
+        for (int i = 0; i < world.size; i++) {
+            if (!active[i]) continue;
+            
+            for (int j = i + 1; j < world.size; j++) {
+                if (active[j] && !(world.isPassive(i) && world.isPassive(j))) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds every body, since any of them may overlap the region.
+     */
+    @Override
+    public int query(PhysicsWorld world, double minX, double minY, double maxX, double maxY) {
+        return world.size;
+    }
+    
+    @Override
+    public int getResult(int k) {
+        return k;
+    }
+}
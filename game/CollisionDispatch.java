@@ -0,0 +1,98 @@
+package game;
+
+/**
+ * Table indexed by the type ids of two bodies that picks the narrowphase routine
+ * testing them and the callback run when they collide. Routines are registered for
+ * an ordered pair of types and called with the bodies in that order, whichever order
+ * the pair is found in. Every pair of types used in a world must be registered.
+ */
+public class CollisionDispatch {
+    // Body type ids
+    public static final byte TYPE_BODY = 0;
+    public static final byte TYPE_BLOCK = 1;
+    public static final byte TYPE_LETTER = 2;
+    public static final int MAX_TYPES = 8;
+    
+    /**
+     * Tests whether two bodies overlap.
+     */
+    public interface Narrowphase {
+        boolean collides(PhysicsWorld world, int i, int j);
+    }
+    
+    /**
+     * Applies the game effects of two bodies colliding. Only the two bodies may be
+     * written, since contacts sharing no body can be solved at the same time.
+     */
+    public interface ContactListener {
+        void onContact(PhysicsWorld world, int i, int j);
+    }
+    
+    // Entries for each ordered pair of types; swapped entries call their routines with
+    // the bodies the other way round
+    private final Narrowphase[] narrowphases = new Narrowphase[MAX_TYPES * MAX_TYPES];
+    private final ContactListener[] listeners = new ContactListener[MAX_TYPES * MAX_TYPES];
+    private final boolean[] swapped = new boolean[MAX_TYPES * MAX_TYPES];
+    
+    /**
+     * Creates the table for the game's bodies: boxes for plain bodies and blocks,
+     * circles for letters, and block damage when a letter hits a block.
+     */
+    public static CollisionDispatch createDefault() {
+        CollisionDispatch dispatch = new CollisionDispatch();
+        dispatch.register(TYPE_BODY, TYPE_BODY, PhysicsEngine::collidesBoxes, null);
+        dispatch.register(TYPE_BODY, TYPE_BLOCK, PhysicsEngine::collidesBoxes, null);
+        dispatch.register(TYPE_BLOCK, TYPE_BLOCK, PhysicsEngine::collidesBoxes, null);
+        dispatch.register(TYPE_LETTER, TYPE_LETTER, PhysicsEngine::collidesCircles, null);
+        dispatch.register(TYPE_LETTER, TYPE_BODY, PhysicsEngine::collidesCircleBox, null);
+        dispatch.register(TYPE_LETTER, TYPE_BLOCK, PhysicsEngine::collidesCircleBox, PhysicsEngine::letterHitsBlock);
+        return dispatch;
+    }
+    
+    /**
+     * Sets the narrowphase routine and contact callback for bodies of two types. The
+     * callback may be null when colliding has no game effect.
+     */
+    public void register(int typeA, int typeB, Narrowphase narrowphase, ContactListener listener) {
+        int forward = typeA * MAX_TYPES + typeB;
+        int reverse = typeB * MAX_TYPES + typeA;
+        narrowphases[reverse] = narrowphase;
+        listeners[reverse] = listener;
+        swapped[reverse] = true;
+        
+        // For a pair of the same type, the forward entry replaces the reverse one
+        narrowphases[forward] = narrowphase;
+        listeners[forward] = listener;
+        swapped[forward] = false;
+    }
+    
+    /**
+     * Tests whether two bodies overlap, using the routine registered for their types.
+     */
+    boolean collides(PhysicsWorld world, int i, int j) {
+        int entry = world.type[i] * MAX_TYPES + world.type[j];
+        return swapped[entry] ? narrowphases[entry].collides(world, j, i) : narrowphases[entry].collides(world, i, j);
+    }
+    
+    /**
+     * Checks whether a callback is registered for the types of two bodies.
+     */
+    boolean hasListener(PhysicsWorld world, int i, int j) {
+        return listeners[world.type[i] * MAX_TYPES + world.type[j]] != null;
+    }
+    
+    /**
+     * Runs the callback registered for the types of two colliding bodies, if any.
+     */
+    void onContact(PhysicsWorld world, int i, int j) {
+        int entry = world.type[i] * MAX_TYPES + world.type[j];
+        ContactListener listener = listeners[entry];
+        if (listener == null) return;
+        
+        if (swapped[entry]) {
+            listener.onContact(world, j, i);
+        } else {
+            listener.onContact(world, i, j);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a world's contacts in batches, coloring the contact graph so that no two
+ * contacts in a batch share a body. Contacts in a batch write to disjoint bodies and
+ * contact cache slots, so each batch is solved in parallel on the fork/join pool.
+ * The coloring depends only on the contact order, so the result does not depend on
+ * the number of threads.
+ */
+public class ColoredSolver {
+    // One bit per color in a body's mask; contacts that find every color taken go into
+    // a last batch that is solved serially
+    public static final int MAX_COLORS = 64;
+    
+    // Batches smaller than this are solved on the current thread
+    static final int SPLIT_THRESHOLD = 128;
+    
+    // Contacts of the current iteration, in pair order
+    private int[] contactBodies1 = new int[256];
+    private int[] contactBodies2 = new int[256];
+    private int[] contactSlots = new int[256];
+    private int[] contactColors = new int[256];
+    private double[] contactResiduals = new double[256];
+    private int contactCount = 0;
+    
+    // Contact indices grouped by color; batch k is [batchStarts[k], batchStarts[k + 1])
+    private int[] batched = new int[256];
+    private final int[] batchStarts = new int[MAX_COLORS + 2];
+    private int colorCount = 0;
+    
+    // Colors already used by each body's contacts, indexed by handle
+    private long[] bodyColors = new long[64];
+    
+    /**
+     * Resolves the overlapping pairs flagged by the narrowphase. Returns the largest
+     * correction of any contact, relative to the solver tolerances.
+     */
+    double solve(PhysicsWorld world) {
+        gatherContacts(world);
+        colorContacts(world);
+        
+        for (int color = 0; color <= MAX_COLORS; color++) {
+            int from = batchStarts[color];
+            int to = batchStarts[color + 1];
+            if (color < MAX_COLORS && to - from > SPLIT_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(new BatchTask(world, from, to));
+            } else {
+                solveRange(world, from, to);
+            }
+        }
+        
+        // Each contact wrote its own residual, so the largest is the same for any split
+        double residual = 0;
+        for (int c = 0; c < contactCount; c++) {
+            residual = Math.max(residual, contactResiduals[c]);
+        }
+        return residual;
+    }
+    
+    /**
+     * Gets the number of colors used by the last iteration, not counting the serial batch.
+     */
+    public int getColorCount() {
+        return colorCount;
+    }
+    
+    /**
+     * Gets the number of contacts solved by the last iteration.
+     */
+    public int getContactCount() {
+        return contactCount;
+    }
+    
+    /**
+     * Collects the flagged pairs that still need solving, waking any island hit hard
+     * enough, and looks up their contact cache slots.
+     */
+    private void gatherContacts(PhysicsWorld world) {
+        PairBuffer pairs = world.pairs;
+        boolean[] active = world.active;
+        
+        if (contactBodies1.length < pairs.size()) {
+            int capacity = Math.max(pairs.size(), contactBodies1.length * 2);
+            contactBodies1 = new int[capacity];
+            contactBodies2 = new int[capacity];
+            contactSlots = new int[capacity];
+            contactColors = new int[capacity];
+            contactResiduals = new double[capacity];
+            batched = new int[capacity];
+        }
+        
+        // Slots stay valid while no lookup has to grow the cache
+        world.contacts.ensureCapacity(pairs.size());
+        
+        contactCount = 0;
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            if (!world.pairOverlaps[pair]) continue;
+            
+            int i = pairs.first(pair);
+            int j = pairs.second(pair);
+            if (!active[i] || !active[j] || PhysicsEngine.atRest(world, i, j)) continue;
+            
+            PhysicsEngine.wakeOnImpact(world, i, j);
+            contactBodies1[contactCount] = i;
+            contactBodies2[contactCount] = j;
+            contactSlots[contactCount] = world.contacts.findOrAdd(PhysicsEngine.contactKey(world, i, j));
+            contactCount++;
+        }
+    }
+    
+    /**
+     * Gives each contact the lowest color not yet used by either of its bodies, then
+     * groups the contacts by color. Resolving a contact never writes a body with
+     * infinite mass, so such bodies don't take colors, unless the contact runs a
+     * callback that may change them.
+     */
+    private void colorContacts(PhysicsWorld world) {
+        if (bodyColors.length < world.size) {
+            bodyColors = new long[Math.max(world.size, bodyColors.length * 2)];
+        }
+        Arrays.fill(bodyColors, 0, world.size, 0L);
+        Arrays.fill(batchStarts, 0);
+        
+        colorCount = 0;
+        for (int c = 0; c < contactCount; c++) {
+            int i = contactBodies1[c];
+            int j = contactBodies2[c];
+            boolean callback = world.dispatch.hasListener(world, i, j);
+            boolean colorsI = callback || PhysicsEngine.inverseMass(world, i) > 0;
+            boolean colorsJ = callback || PhysicsEngine.inverseMass(world, j) > 0;
+            long used = (colorsI ? bodyColors[i] : 0) | (colorsJ ? bodyColors[j] : 0);
+            int color = Long.numberOfTrailingZeros(~used);
+            if (color < MAX_COLORS) {
+                if (colorsI) bodyColors[i] |= 1L << color;
+                if (colorsJ) bodyColors[j] |= 1L << color;
+                colorCount = Math.max(colorCount, color + 1);
+            }
+            contactColors[c] = color;
+            batchStarts[color + 1]++;
+        }
+        
+        // Turn the counts into batch offsets, then place each contact in its batch
+        for (int color = 0; color <= MAX_COLORS; color++) {
+            batchStarts[color + 1] += batchStarts[color];
+        }
+        for (int c = 0; c < contactCount; c++) {
+            batched[batchStarts[contactColors[c]]++] = c;
+        }
+        for (int color = MAX_COLORS; color > 0; color--) {
+            batchStarts[color] = batchStarts[color - 1];
+        }
+        batchStarts[0] = 0;
+    }
+    
+    /**
+     * Solves the batched contacts in [from, to).
+     */
+    private void solveRange(PhysicsWorld world, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int c = batched[k];
+            int i = contactBodies1[c];
+            int j = contactBodies2[c];
+            
+            // Resolving earlier batches may have pushed this pair apart
+            if (PhysicsEngine.collides(world, i, j)) {
+                contactResiduals[c] = PhysicsEngine.resolveCollision(world, i, j, contactSlots[c]);
+                world.dispatch.onContact(world, i, j);
+            } else {
+                contactResiduals[c] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Solves a range of one batch, splitting it in half first if it is large.
+     */
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final PhysicsWorld world;
+        private final int from, to;
+        
+        /**
+         * Constructs a task solving the batched contacts in [from, to).
+         */
+        BatchTask(PhysicsWorld world, int from, int to) {
+            this.world = world;
+            this.from = from;
+            this.to = to;
+        }
+        
+        /**
+         * Solves the range, splitting it in half first if it is large.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                solveRange(world, from, to);
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(world, from, mid), new BatchTask(world, mid, to));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from a body-pair key to the contact's accumulated normal
+ * impulse, kept from one tick to the next so the solver can be warm-started. Keys and
+ * values are stored in primitive arrays, so lookups allocate nothing.
+ */
+public class ContactCache {
+    private static final long EMPTY = -1L;
+    
+    // Table slots; a key of EMPTY marks a free slot
+    private long[] keys;
+    private double[] impulse;
+    private int[] lastTick;
+    private int size = 0;
+    
+    // Spare table, swapped in when stale contacts are evicted
+    private long[] spareKeys;
+    private double[] spareImpulse;
+    private int[] spareLastTick;
+    
+    /**
+     * Constructs an empty cache.
+     */
+    public ContactCache() {
+        allocate(256);
+    }
+    
+    /**
+     * Builds the key of a pair from the bodies' ids, smaller id first.
+     */
+    public static long key(int id1, int id2) {
+        return id1 < id2 ? ((long) id1 << 32) | id2 : ((long) id2 << 32) | id1;
+    }
+    
+    /**
+     * Finds the slot for a contact, adding an empty one if it is not cached yet.
+     * The slot stays valid until the next call to findOrAdd or evictStale.
+     */
+    public int findOrAdd(long key) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        
+        int slot = slotFor(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            impulse[slot] = 0;
+            lastTick[slot] = Integer.MIN_VALUE;
+            size++;
+        }
+        return slot;
+    }
+    
+    /**
+     * Grows the table so that the given number of contacts can be added without a
+     * resize, which keeps every slot returned by findOrAdd until then valid.
+     */
+    public void ensureCapacity(int additional) {
+        int capacity = keys.length;
+        while ((size + additional + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+    
+    /**
+     * Removes every contact that was not touched during the given tick.
+     */
+    public void evictStale(int tick) {
+        Arrays.fill(spareKeys, EMPTY);
+        int kept = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY || lastTick[slot] != tick) continue;
+            
+            int target = slotFor(spareKeys, keys[slot]);
+            copySlot(slot, target);
+            kept++;
+        }
+        swapTables();
+        size = kept;
+    }
+    
+    /**
+     * Gets the number of cached contacts.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the normal impulse accumulated on the contact, pushing the bodies apart.
+     */
+    public double getImpulse(int slot) {
+        return impulse[slot];
+    }
+    
+    /**
+     * Sets the normal impulse accumulated on the contact.
+     */
+    public void setImpulse(int slot, double value) {
+        impulse[slot] = value;
+    }
+    
+    /**
+     * Checks whether the contact in a slot was touched during the given tick.
+     */
+    public boolean isTouched(int slot, int tick) {
+        return lastTick[slot] == tick;
+    }
+    
+    /**
+     * Marks the contact in a slot as touched during the given tick.
+     */
+    public void touch(int slot, int tick) {
+        lastTick[slot] = tick;
+    }
+    
+    /**
+     * Removes every contact.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+    
+    /**
+     * Finds the slot holding a key, or the empty slot where it belongs, by linear probing.
+     */
+    private static int slotFor(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    /**
+     * Spreads the bits of a key so neighboring pairs land in different slots.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+    
+    /**
+     * Copies a live slot into the spare table.
+     */
+    private void copySlot(int from, int to) {
+        spareKeys[to] = keys[from];
+        spareImpulse[to] = impulse[from];
+        spareLastTick[to] = lastTick[from];
+    }
+    
+    /**
+     * Makes the spare table the live one, and the live one the spare.
+     */
+    private void swapTables() {
+        long[] oldKeys = keys;
+        keys = spareKeys;
+        spareKeys = oldKeys;
+        
+        double[] oldImpulse = impulse;
+        impulse = spareImpulse;
+        spareImpulse = oldImpulse;
+        
+        int[] oldLastTick = lastTick;
+        lastTick = spareLastTick;
+        spareLastTick = oldLastTick;
+    }
+    
+    /**
+     * Grows both tables to the given power-of-two capacity, rehashing every contact.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldImpulse = impulse;
+        int[] oldLastTick = lastTick;
+        
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] == EMPTY) continue;
+            
+            int target = slotFor(keys, oldKeys[slot]);
+            keys[target] = oldKeys[slot];
+            impulse[target] = oldImpulse[slot];
+            lastTick[target] = oldLastTick[slot];
+        }
+    }
+    
+    /**
+     * Allocates empty live and spare tables.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        impulse = new double[capacity];
+        lastTick = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        
+        spareKeys = new long[capacity];
+        spareImpulse = new double[capacity];
+        spareLastTick = new int[capacity];
+    }
+}
@@ -0,0 +1,503 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic bounding volume tree over integer ids, such as body handles. Leaves store
+ * "fat" bounds, enlarged by a margin, so an entry only has to be reinserted once it
+ * moves outside them. Nodes live in parallel arrays and are recycled through a free list.
+ */
+public class DynamicAabbTree {
+    // Extra space around each entry's bounds in a leaf
+    public static final double FAT_MARGIN = 8.0;
+    
+    private static final int NULL_NODE = -1;
+    
+    // Node storage
+    private double[] minX, minY, maxX, maxY;
+    private int[] parent, child1, child2, height;
+    
+    // Leaf data: the entry's id and its exact bounds
+    private int[] ids;
+    private double[] tightMinX, tightMinY, tightMaxX, tightMaxY;
+    
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    
+    // Traversal stack and query results, reused between queries
+    private int[] stack = new int[64];
+    private int[] results = new int[64];
+    
+    /**
+     * Constructs an empty tree.
+     */
+    public DynamicAabbTree() {
+        int capacity = 16;
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        parent = new int[capacity];
+        child1 = new int[capacity];
+        child2 = new int[capacity];
+        height = new int[capacity];
+        ids = new int[capacity];
+        tightMinX = new double[capacity];
+        tightMinY = new double[capacity];
+        tightMaxX = new double[capacity];
+        tightMaxY = new double[capacity];
+        linkFreeNodes(0, capacity);
+    }
+    
+    /**
+     * Creates a leaf for an id with the given bounds and returns its proxy.
+     */
+    public int createProxy(int id, double minX, double minY, double maxX, double maxY) {
+        int leaf = allocateNode();
+        ids[leaf] = id;
+        setBounds(leaf, minX, minY, maxX, maxY);
+        insertLeaf(leaf);
+        return leaf;
+    }
+    
+    /**
+     * Removes a leaf from the tree.
+     */
+    public void destroyProxy(int proxy) {
+        removeLeaf(proxy);
+        freeNode(proxy);
+    }
+    
+    /**
+     * Updates a leaf's bounds. The tree is only restructured when the new bounds leave
+     * the leaf's fat bounds; returns whether that happened.
+     */
+    public boolean moveProxy(int proxy, double minX, double minY, double maxX, double maxY) {
+        tightMinX[proxy] = minX;
+        tightMinY[proxy] = minY;
+        tightMaxX[proxy] = maxX;
+        tightMaxY[proxy] = maxY;
+        if (this.minX[proxy] <= minX && this.minY[proxy] <= minY
+                && maxX <= this.maxX[proxy] && maxY <= this.maxY[proxy]) {
+            return false;
+        }
+        
+        removeLeaf(proxy);
+        setBounds(proxy, minX, minY, maxX, maxY);
+        insertLeaf(proxy);
+        return true;
+    }
+    
+    /**
+     * Finds every entry whose bounds overlap the given region. Returns the number found;
+     * read them with getResult.
+     */
+    public int query(double regionMinX, double regionMinY, double regionMaxX, double regionMaxY) {
+        if (root == NULL_NODE) return 0;
+        
+        int found = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > regionMaxX || maxX[node] < regionMinX
+                    || minY[node] > regionMaxY || maxY[node] < regionMinY) {
+                continue;
+            }
+            
+            if (isLeaf(node)) {
+                if (tightMinX[node] <= regionMaxX && regionMinX <= tightMaxX[node]
+                        && tightMinY[node] <= regionMaxY && regionMinY <= tightMaxY[node]) {
+                    if (found == results.length) {
+                        results = Arrays.copyOf(results, found * 2);
+                    }
+                    results[found++] = ids[node];
+                }
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Gets an id found by the last query.
+     */
+    public int getResult(int k) {
+        return results[k];
+    }
+    
+    /**
+     * Casts a ray along the segment from (x1, y1) to (x2, y2) and returns the id of the
+     * first entry whose bounds it hits, or -1 if it hits nothing.
+     */
+    public int raycast(double x1, double y1, double x2, double y2) {
+        if (root == NULL_NODE) return -1;
+        
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double closest = 1.0;
+        int hit = -1;
+        
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            
+            // Skip nodes the segment misses or only reaches beyond the closest hit so far
+            if (segmentFraction(x1, y1, dx, dy, minX[node], minY[node], maxX[node], maxY[node]) > closest) {
+                continue;
+            }
+            
+            if (isLeaf(node)) {
+                double fraction = segmentFraction(x1, y1, dx, dy,
+                        tightMinX[node], tightMinY[node], tightMaxX[node], tightMaxY[node]);
+                if (fraction <= closest) {
+                    closest = fraction;
+                    hit = ids[node];
+                }
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+        return hit;
+    }
+    
+    /**
+     * Gets the height of the tree, 0 for a single leaf.
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? 0 : height[root];
+    }
+    
+    /**
+     * Returns the fraction along the segment where it enters the box, 0 if it starts
+     * inside, or positive infinity if it misses.
+     */
+    private static double segmentFraction(double x1, double y1, double dx, double dy,
+                                          double boxMinX, double boxMinY, double boxMaxX, double boxMaxY) {
+        double enter = 0.0;
+        double exit = 1.0;
+        
+        // Slab test on the x axis
+        if (Math.abs(dx) < 1e-12) {
+            if (x1 < boxMinX || x1 > boxMaxX) return Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (boxMinX - x1) / dx;
+            double t2 = (boxMaxX - x1) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        // Slab test on the y axis
+        if (Math.abs(dy) < 1e-12) {
+            if (y1 < boxMinY || y1 > boxMaxY) return Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (boxMinY - y1) / dy;
+            double t2 = (boxMaxY - y1) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        return enter <= exit ? enter : Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Pushes a node onto the traversal stack, growing it if needed.
+     */
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+    
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL_NODE;
+    }
+    
+    /**
+     * Sets a leaf's exact bounds, and its fat bounds enlarged by the margin.
+     */
+    private void setBounds(int leaf, double boundsMinX, double boundsMinY, double boundsMaxX, double boundsMaxY) {
+        tightMinX[leaf] = boundsMinX;
+        tightMinY[leaf] = boundsMinY;
+        tightMaxX[leaf] = boundsMaxX;
+        tightMaxY[leaf] = boundsMaxY;
+        minX[leaf] = boundsMinX - FAT_MARGIN;
+        minY[leaf] = boundsMinY - FAT_MARGIN;
+        maxX[leaf] = boundsMaxX + FAT_MARGIN;
+        maxY[leaf] = boundsMaxY + FAT_MARGIN;
+    }
+    
+    /**
+     * Sets a node's bounds to the union of two other nodes' bounds.
+     */
+    private void setUnion(int node, int a, int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+    }
+    
+    private double perimeter(int node) {
+        return 2 * ((maxX[node] - minX[node]) + (maxY[node] - minY[node]));
+    }
+    
+    private double unionPerimeter(int a, int b) {
+        double unionWidth = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        double unionHeight = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        return 2 * (unionWidth + unionHeight);
+    }
+    
+    /**
+     * Inserts a leaf, choosing the sibling that grows the tree's total perimeter the least.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[leaf] = NULL_NODE;
+            return;
+        }
+        
+        // Descend towards the cheapest sibling
+        int index = root;
+        while (!isLeaf(index)) {
+            int left = child1[index];
+            int right = child2[index];
+            
+            double combined = unionPerimeter(index, leaf);
+            double cost = 2 * combined;
+            double inheritanceCost = 2 * (combined - perimeter(index));
+            
+            double costLeft = descendCost(left, leaf) + inheritanceCost;
+            double costRight = descendCost(right, leaf) + inheritanceCost;
+            
+            if (cost < costLeft && cost < costRight) break;
+            index = costLeft < costRight ? left : right;
+        }
+        int sibling = index;
+        
+        // Create a new parent for the sibling and the leaf
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+        
+        if (oldParent != NULL_NODE) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        
+        refitAncestors(parent[leaf]);
+    }
+    
+    /**
+     * Cost of descending into a child when inserting a leaf below it.
+     */
+    private double descendCost(int child, int leaf) {
+        if (isLeaf(child)) {
+            return unionPerimeter(child, leaf);
+        }
+        return unionPerimeter(child, leaf) - perimeter(child);
+    }
+    
+    /**
+     * Removes a leaf, replacing its parent with its sibling.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+        
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+        
+        if (grandParent != NULL_NODE) {
+            if (child1[grandParent] == oldParent) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(oldParent);
+        }
+    }
+    
+    /**
+     * Walks from a node to the root, rebalancing and refitting bounds and heights.
+     */
+    private void refitAncestors(int node) {
+        while (node != NULL_NODE) {
+            node = balance(node);
+            
+            int left = child1[node];
+            int right = child2[node];
+            height[node] = 1 + Math.max(height[left], height[right]);
+            setUnion(node, left, right);
+            
+            node = parent[node];
+        }
+    }
+    
+    /**
+     * Performs a left or right rotation if the subtree at the node is unbalanced.
+     * Returns the node that now roots the subtree.
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || height[a] < 2) {
+            return a;
+        }
+        
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+        
+        if (balance > 1) {
+            // Rotate c up
+            int f = child1[c];
+            int g = child2[c];
+            
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+        
+        if (balance < -1) {
+            // Rotate b up
+            int d = child1[b];
+            int e = child2[b];
+            
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        
+        return a;
+    }
+    
+    /**
+     * Points a parent's child link (or the root) at a new node after a rotation.
+     */
+    private void replaceChild(int parentNode, int oldChild, int newChild) {
+        if (parentNode == NULL_NODE) {
+            root = newChild;
+        } else if (child1[parentNode] == oldChild) {
+            child1[parentNode] = newChild;
+        } else {
+            child2[parentNode] = newChild;
+        }
+    }
+    
+    /**
+     * Takes a node from the free list, growing the storage when it is empty.
+     */
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            int oldCapacity = parent.length;
+            int capacity = oldCapacity * 2;
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            child1 = Arrays.copyOf(child1, capacity);
+            child2 = Arrays.copyOf(child2, capacity);
+            height = Arrays.copyOf(height, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            tightMinX = Arrays.copyOf(tightMinX, capacity);
+            tightMinY = Arrays.copyOf(tightMinY, capacity);
+            tightMaxX = Arrays.copyOf(tightMaxX, capacity);
+            tightMaxY = Arrays.copyOf(tightMaxY, capacity);
+            linkFreeNodes(oldCapacity, capacity);
+        }
+        
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        return node;
+    }
+    
+    /**
+     * Returns a node to the free list.
+     */
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+    }
+    
+    /**
+     * Chains the nodes in [from, to) onto the free list, using parent as the next link.
+     */
+    private void linkFreeNodes(int from, int to) {
+        for (int node = from; node < to; node++) {
+            parent[node] = node + 1 < to ? node + 1 : freeList;
+            height[node] = -1;
+        }
+        freeList = from;
+    }
+}
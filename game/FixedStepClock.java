@@ -0,0 +1,52 @@
+package game;
+
+/**
+ * Turns elapsed time into a whole number of fixed-length physics steps. Time left over
+ * is carried into the next frame, and is exposed as the fraction of a step that
+ * rendering should blend towards the current physics state.
+ */
+public class FixedStepClock {
+    private final double stepSeconds;
+    private double accumulator = 0;
+    
+    /**
+     * Constructs a clock running the given number of steps per second.
+     */
+    public FixedStepClock(double stepsPerSecond) {
+        if (!(stepsPerSecond > 0)) {
+            throw new IllegalArgumentException("Step rate must be positive: " + stepsPerSecond);
+        }
+        this.stepSeconds = 1 / stepsPerSecond;
+    }
+    
+    /**
+     * Adds elapsed time and returns how many whole steps are now due.
+     */
+    public int advance(double elapsedSeconds) {
+        accumulator += elapsedSeconds;
+        int steps = (int) (accumulator / stepSeconds);
+        accumulator -= steps * stepSeconds;
+        return steps;
+    }
+    
+    /**
+     * Gets how far the leftover time reaches into the next step, from 0 to 1.
+     */
+    public double getAlpha() {
+        return accumulator / stepSeconds;
+    }
+    
+    /**
+     * Gets the length of one step in seconds.
+     */
+    public double getStepSeconds() {
+        return stepSeconds;
+    }
+    
+    /**
+     * Drops any leftover time.
+     */
+    public void reset() {
+        accumulator = 0;
+    }
+}
@@ -7,176 +7,320 @@ import java.awt.geom.Rectangle2D;
  * Base class for all game objects such as letters and blocks.
  */
 public abstract class GameObject {
-    protected double x, y;
-    protected double width, height;
-    protected double velocityX, velocityY;
-    protected double mass;
-    protected boolean active = true;
-    protected Color color;
+    // Physics state lives in the world's arrays at this handle
+    protected final PhysicsWorld world;
+    protected int handle;
+    
+    // Color as packed RGB. The AWT color is only created once the object is drawn, so
+    // a headless simulation never loads AWT
+    protected int rgb = 0x808080;
+    private Color color;
+    
+    // Collision categories; an object collides with another only if each one's category
+    // is in the other's mask
+    public static final int CATEGORY_DEFAULT = 1;
+    public static final int MASK_ALL = -1;
     
     /**
      * Constructs a game object with specified position and dimensions.
      */
-    public GameObject(double x, double y, double width, double height, double mass) {
-        this.x = x;
-        this.y = y;
-        this.width = width;
-        this.height = height;
-        this.mass = mass;
-        this.velocityX = 0;
-        this.velocityY = 0;
-        this.color = Color.GRAY;
+    public GameObject(PhysicsWorld world, double x, double y, double width, double height, double mass) {
+        this.world = world;
+        this.handle = world.createBody(this, x, y, width, height, mass);
     }
     
     /**
-     * Updates the object's position based on its velocity.
+     * Renders the object on the screen, blended between its last two physics states.
+     * An alpha of 0 draws the previous state and 1 draws the current one.
      */
-    public void update(double deltaTime) {
-        if (!active) return;
-        
-        // Update position based on velocity
-        x += velocityX * deltaTime;
-        y += velocityY * deltaTime;
-        
-        // Apply gravity
-        velocityY += PhysicsEngine.GRAVITY * deltaTime;
-        
-        // Apply drag/friction
-        velocityX *= 0.99;
-        velocityY *= 0.99;
-        
-        // If object is out of bounds, deactivate it
-        if (y > 500) {
-            active = false;
-        }
+    public void render(Graphics2D g, double alpha) {
+        if (!isActive()) return;
+        draw(g, (int)getRenderX(alpha), (int)getRenderY(alpha), (int)getWidth(), (int)getHeight(),
+                rgb, renderState());
     }
     
     /**
-     * Renders the object on the screen.
+     * Draws the object at a position, from state captured for rendering rather than from
+     * the world, so it can be drawn while the world is being stepped on another thread.
+     */
+    abstract void draw(Graphics2D g, int x, int y, int width, int height, int rgb, int state);
+    
+    /**
+     * Gets what the object shows besides its position, size and color, passed back to
+     * draw as its state.
      */
-    public abstract void render(Graphics2D g);
+    int renderState() {
+        return 0;
+    }
     
     /**
      * Gets the bounding rectangle for collision detection.
      */
     public Rectangle2D.Double getBounds() {
-        return new Rectangle2D.Double(x, y, width, height);
+        return new Rectangle2D.Double(getX(), getY(), getWidth(), getHeight());
     }
     
     /**
      * Applies a force to the object.
      */
     public void applyForce(double forceX, double forceY) {
-        velocityX += forceX / mass;
-        velocityY += forceY / mass;
+        world.velocityX[handle] += forceX / world.mass[handle];
+        world.velocityY[handle] += forceY / world.mass[handle];
     }
     
     /**
      * Applies an impulse to the object (instantaneous change in velocity).
      */
     public void applyImpulse(double impulseX, double impulseY) {
-        velocityX += impulseX / mass;
-        velocityY += impulseY / mass;
+        world.velocityX[handle] += impulseX / world.mass[handle];
+        world.velocityY[handle] += impulseY / world.mass[handle];
     }
     
     /**
      * Checks if this object collides with another object.
      */
     public boolean collidesWith(GameObject other) {
-        // Standard AABB (Axis-Aligned Bounding Box) collision detection
-        if (!getBounds().intersects(other.getBounds())) {
-            return false;
-        }
-        
-        // For more precise collision detection, check if the penetration depth is significant
-        double overlapX = (this.width + other.getWidth()) / 2 - 
-                Math.abs((this.x + this.width/2) - (other.getX() + other.getWidth()/2));
-        double overlapY = (this.height + other.getHeight()) / 2 - 
-                Math.abs((this.y + this.height/2) - (other.getY() + other.getHeight()/2));
-                
-        // If overlap is very small, don't consider it a collision - this prevents jittering
-        if (overlapX < 0.1 || overlapY < 0.1) {
-            return false;
-        }
-        
-        return true;
+        return world == other.world && PhysicsEngine.shouldCollide(world, handle, other.handle)
+                && PhysicsEngine.collides(world, handle, other.handle);
+    }
+    
+    /**
+     * Sets the object's collision category bits.
+     */
+    public void setCategory(int category) {
+        world.category[handle] = category;
+    }
+    
+    /**
+     * Gets the object's collision category bits.
+     */
+    public int getCategory() {
+        return world.category[handle];
+    }
+    
+    /**
+     * Sets the categories the object collides with.
+     */
+    public void setMask(int mask) {
+        world.mask[handle] = mask;
+    }
+    
+    /**
+     * Gets the categories the object collides with.
+     */
+    public int getMask() {
+        return world.mask[handle];
     }
     
     /**
      * Gets the object's x position.
      */
     public double getX() {
-        return x;
+        return world.x[handle];
     }
     
     /**
      * Gets the object's y position.
      */
     public double getY() {
-        return y;
+        return world.y[handle];
+    }
+    
+    /**
+     * Gets the x position to draw the object at, blended between its last two physics states.
+     */
+    public double getRenderX(double alpha) {
+        return world.previousX[handle] + (world.x[handle] - world.previousX[handle]) * alpha;
+    }
+    
+    /**
+     * Gets the y position to draw the object at, blended between its last two physics states.
+     */
+    public double getRenderY(double alpha) {
+        return world.previousY[handle] + (world.y[handle] - world.previousY[handle]) * alpha;
     }
     
     /**
      * Gets the object's width.
      */
     public double getWidth() {
-        return width;
+        return world.width[handle];
     }
     
     /**
      * Gets the object's height.
      */
     public double getHeight() {
-        return height;
+        return world.height[handle];
     }
     
     /**
      * Gets the object's x velocity.
      */
     public double getVelocityX() {
-        return velocityX;
+        return world.velocityX[handle];
     }
     
     /**
      * Gets the object's y velocity.
      */
     public double getVelocityY() {
-        return velocityY;
+        return world.velocityY[handle];
     }
     
     /**
      * Sets the object's x velocity.
      */
     public void setVelocityX(double velocityX) {
-        this.velocityX = velocityX;
+        world.velocityX[handle] = velocityX;
     }
     
     /**
      * Sets the object's y velocity.
      */
     public void setVelocityY(double velocityY) {
-        this.velocityY = velocityY;
+        world.velocityY[handle] = velocityY;
+    }
+    
+    /**
+     * Copies the object's velocity into out, and returns it.
+     */
+    public Vector2D getVelocity(Vector2D out) {
+        return out.set(world.velocityX[handle], world.velocityY[handle]);
+    }
+    
+    /**
+     * Sets the object's velocity from a vector.
+     */
+    public void setVelocity(Vector2D velocity) {
+        world.velocityX[handle] = velocity.getX();
+        world.velocityY[handle] = velocity.getY();
     }
     
     /**
      * Gets the object's mass.
      */
     public double getMass() {
-        return mass;
+        return world.mass[handle];
+    }
+    
+    /**
+     * Gets the object's inverse mass, which is zero while it sleeps.
+     */
+    public double getInverseMass() {
+        return world.sleeping[handle] ? 0 : 1 / world.mass[handle];
     }
     
     /**
      * Checks if the object is active.
      */
     public boolean isActive() {
-        return active;
+        return world.active[handle];
     }
     
     /**
-     * Sets the object's active state.
+     * Sets the object's active state. Deactivating an object wakes whatever sleeps
+     * against it.
      */
     public void setActive(boolean active) {
-        this.active = active;
+        if (!active && world.active[handle]) {
+            PhysicsEngine.wakeTouching(world, handle);
+        }
+        world.active[handle] = active;
+    }
+    
+    /**
+     * Checks if the object is asleep. Sleeping objects are not moved by the physics
+     * engine until something hits them.
+     */
+    public boolean isSleeping() {
+        return world.sleeping[handle];
+    }
+    
+    /**
+     * Puts the object to sleep, stopping it in place.
+     */
+    public void sleep() {
+        world.sleeping[handle] = true;
+        world.velocityX[handle] = 0;
+        world.velocityY[handle] = 0;
+    }
+    
+    /**
+     * Wakes the object so the physics engine simulates it again. Static and kinematic
+     * objects stay asleep.
+     */
+    public void wake() {
+        if (world.isPassive(handle)) return;
+        world.sleeping[handle] = false;
+        world.sleepTicks[handle] = 0;
+        world.averageVelocityX[handle] = world.velocityX[handle];
+        world.averageVelocityY[handle] = world.velocityY[handle];
+    }
+    
+    /**
+     * Sets how the object moves: PhysicsWorld.MOTION_DYNAMIC objects are simulated,
+     * MOTION_STATIC objects stay where they are, and MOTION_KINEMATIC objects move by
+     * their velocity alone. Static and kinematic objects have infinite mass, ignore
+     * gravity and the world bounds, and only collide with dynamic objects.
+     */
+    public void setMotion(byte motion) {
+        if (motion != PhysicsWorld.MOTION_DYNAMIC && motion != PhysicsWorld.MOTION_STATIC
+                && motion != PhysicsWorld.MOTION_KINEMATIC) {
+            throw new IllegalArgumentException("Unknown motion type: " + motion);
+        }
+        boolean wasPassive = world.isPassive(handle);
+        world.motion[handle] = motion;
+        
+        // Passive objects count as asleep, so the engine neither integrates nor pushes them.
+        // One becoming dynamic may fall away from whatever sleeps on it, so that wakes too
+        if (motion == PhysicsWorld.MOTION_DYNAMIC) {
+            wake();
+            if (wasPassive) {
+                PhysicsEngine.wakeTouching(world, handle);
+            }
+        } else {
+            world.sleeping[handle] = true;
+            if (motion == PhysicsWorld.MOTION_STATIC) {
+                world.velocityX[handle] = 0;
+                world.velocityY[handle] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Gets how the object moves.
+     */
+    public byte getMotion() {
+        return world.motion[handle];
+    }
+    
+    /**
+     * Checks whether the object never moves.
+     */
+    public boolean isStatic() {
+        return world.motion[handle] == PhysicsWorld.MOTION_STATIC;
+    }
+    
+    /**
+     * Checks whether the object moves only by the velocity it is given.
+     */
+    public boolean isKinematic() {
+        return world.motion[handle] == PhysicsWorld.MOTION_KINEMATIC;
+    }
+    
+    /**
+     * Gets the world this object's physics state lives in.
+     */
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+    
+    /**
+     * Gets the object's handle in its world, or -1 once it has been removed.
+     */
+    public int getHandle() {
+        return handle;
     }
     
     /**
@@ -184,12 +328,16 @@ public abstract class GameObject {
      */
     public void setColor(Color color) {
         this.color = color;
+        this.rgb = color.getRGB() & 0xffffff;
     }
     
     /**
      * Gets the object's color.
      */
     public Color getColor() {
+        if (color == null) {
+            color = new Color(rgb);
+        }
         return color;
     }
 }
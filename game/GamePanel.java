@@ -3,362 +3,297 @@ package game;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Main game panel that handles rendering and game logic.
+ * Main game panel that handles input and rendering. The game itself is stepped only by a
+ * SimulationThread: input is sent to it as commands, and it publishes a RenderSnapshot
+ * after every change, so neither input nor painting ever waits for a physics step.
+ * The panel draws the latest snapshot in one of two modes, picked at startup with the
+ * wordflinger.render system property. In "passive" mode, the default, a Swing timer
+ * repaints the panel on the event dispatch thread. In "active" mode the panel holds a
+ * canvas that its own render thread draws to through a buffer strategy, at a paced frame
+ * rate set with wordflinger.fps or matching the display's refresh rate.
  */
 public class GamePanel extends JPanel implements ActionListener, MouseListener, MouseMotionListener {
-    // Game objects
-    private List<GameObject> gameObjects;
-    private List<Letter> letters;
-    private List<Block> blocks;
+    // Levels, flings and physics, run on their own thread and drawn here from snapshots
+    private final SimulationThread simulation;
     
-    // Game state
-    private Timer gameTimer;
-    private Random random;
-    private int score = 0;
-    private JLabel scoreLabel;
-    private boolean isDragging = false;
-    private Point dragStart;
-    private Point dragCurrent;
+    // Scenery that doesn't change from frame to frame, drawn from cached images
+    private final SceneryLayer scenery = new SceneryLayer();
+    private static final BasicStroke DRAG_STROKE =
+            new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    
+    // Rendering modes
+    public static final String RENDER_PASSIVE = "passive";
+    public static final String RENDER_ACTIVE = "active";
+    
+    // Frame rate used in active mode when the display's refresh rate is unknown
+    public static final int DEFAULT_FPS = 60;
     
-    // Timing
-    private long lastUpdateTime;
-    private double deltaTime;
+    // Active mode: the canvas drawn to, and the thread drawing to it
+    private final boolean activeRendering;
+    private Canvas canvas;
+    private Thread renderThread;
+    private volatile boolean rendering;
     
-    // Current level setup
-    private int currentLevel = 1;
+    // Game state; the drag is also read by the render thread in active mode
+    private Timer gameTimer;
+    private volatile JLabel scoreLabel;
+    private volatile boolean isDragging = false;
+    private volatile Point dragStart;
+    private volatile Point dragCurrent;
+    
+    // What the score label shows, kept by the painting thread
+    private JLabel shownLabel;
+    private int shownScore = -1;
+    private int shownLevel = -1;
     
     /**
-     * Constructs the game panel.
+     * Constructs the game panel, rendering in the mode set with wordflinger.render.
      */
     public GamePanel() {
-        // Initialize lists
-        gameObjects = new ArrayList<>();
-        letters = new ArrayList<>();
-        blocks = new ArrayList<>();
-        random = new Random();
+        this(System.getProperty("wordflinger.render", RENDER_PASSIVE));
+    }
+    
+    /**
+     * Constructs the game panel, rendering in the given mode.
+     */
+    public GamePanel(String renderMode) {
+        if (!RENDER_PASSIVE.equals(renderMode) && !RENDER_ACTIVE.equals(renderMode)) {
+            throw new IllegalArgumentException("Unknown render mode: " + renderMode);
+        }
+        activeRendering = RENDER_ACTIVE.equals(renderMode);
+        
+        // The physics rate can be set with wordflinger.physicsRate
+        simulation = new SimulationThread(new Simulation(), 1);
         
         // Set up panel properties
         setBackground(new Color(240, 240, 255));
         setFocusable(true);
         
-        // Add event listeners
-        addMouseListener(this);
-        addMouseMotionListener(this);
-        
-        // Set up game timer (60 FPS)
-        gameTimer = new Timer(16, this);
-        gameTimer.start();
-        
-        // Initialize time tracking
-        lastUpdateTime = System.nanoTime();
-        
-        // Set up the initial level
-        setupLevel(currentLevel);
+        if (activeRendering) {
+            // The canvas fills the panel and takes the mouse; Swing never repaints it
+            canvas = new Canvas();
+            canvas.setIgnoreRepaint(true);
+            canvas.setBackground(getBackground());
+            canvas.addMouseListener(this);
+            canvas.addMouseMotionListener(this);
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+            setIgnoreRepaint(true);
+        } else {
+            // Add event listeners
+            addMouseListener(this);
+            addMouseMotionListener(this);
+            
+            // Set up repaint timer (60 FPS)
+            gameTimer = new Timer(16, this);
+            gameTimer.start();
+        }
     }
     
     /**
-     * Sets up blocks for the specified level.
+     * Flings a word from the left side of the screen.
      */
-    private void setupLevel(int level) {
-        // Clear existing game objects
-        gameObjects.clear();
-        letters.clear();
-        blocks.clear();
-        
-        // Create different block layouts based on level
-        switch (level) {
-            case 1:
-                // Simple pyramid structure
-                createPyramid(700, 400, 5, 40, 40);
-                break;
-            case 2:
-                // Two columns with platform
-                createColumn(650, 380, 5, 40, 40);
-                createColumn(800, 380, 5, 40, 40);
-                createPlatform(650, 340, 4, 40, 20);
-                break;
-            case 3:
-                // Complex structure
-                createColumn(650, 400, 3, 40, 40);
-                createColumn(750, 400, 3, 40, 40);
-                createColumn(850, 400, 3, 40, 40);
-                createPlatform(650, 280, 6, 40, 20);
-                createPyramid(700, 260, 3, 40, 40);
-                break;
-            default:
-                // Random structure for higher levels
-                int numStructures = 2 + level / 2;
-                for (int i = 0; i < numStructures; i++) {
-                    int structType = random.nextInt(3);
-                    int x = 600 + random.nextInt(300);
-                    int y = 300 + random.nextInt(180);
-                    int size = 2 + random.nextInt(4);
-                    
-                    switch (structType) {
-                        case 0:
-                            createPyramid(x, y, size, 30 + level, 30 + level);
-                            break;
-                        case 1:
-                            createColumn(x, y, size, 30 + level, 30 + level);
-                            break;
-                        case 2:
-                            createPlatform(x, y, size, 40 + level, 20 + level/2);
-                            break;
-                    }
-                }
-                break;
+    public void flingWord(String word) {
+        if (isDragging) {
+            // Use drag vector to determine launch direction
+            simulation.flingWord(word, dragStart.x, dragStart.y, dragCurrent.x, dragCurrent.y);
+        } else {
+            simulation.flingWord(word);
         }
         
-        // Add all blocks to game objects list
-        gameObjects.addAll(blocks);
+        // Reset drag state
+        isDragging = false;
     }
     
     /**
-     * Creates a pyramid structure of blocks.
+     * Called by the repaint timer in passive mode.
      */
-    private void createPyramid(int baseX, int baseY, int rows, int blockWidth, int blockHeight) {
-        for (int row = 0; row < rows; row++) {
-            int blocksInRow = rows - row;
-            
-            for (int col = 0; col < blocksInRow; col++) {
-                double x = baseX + (blockWidth * col) - (blockWidth * blocksInRow / 2.0) + (blockWidth / 2.0);
-                double y = baseY - (row * blockHeight);
-                
-                Block block = new Block(x, y, blockWidth, blockHeight);
-                blocks.add(block);
-            }
-        }
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        // Redraw the panel from the latest snapshot
+        repaint();
     }
     
     /**
-     * Creates a column structure of blocks.
+     * Updates the score display when the score, the level or the label has changed.
+     * Only the painting thread calls this, and the label is set on the event dispatch
+     * thread.
      */
-    private void createColumn(int baseX, int baseY, int height, int blockWidth, int blockHeight) {
-        for (int row = 0; row < height; row++) {
-            double y = baseY - (row * blockHeight);
-            Block block = new Block(baseX, y, blockWidth, blockHeight);
-            blocks.add(block);
+    private void updateScore(RenderSnapshot snapshot) {
+        final JLabel label = scoreLabel;
+        if (label == null || (label == shownLabel && snapshot.getScore() == shownScore
+                && snapshot.getLevel() == shownLevel)) {
+            return;
+        }
+        shownLabel = label;
+        shownScore = snapshot.getScore();
+        shownLevel = snapshot.getLevel();
+        
+        final String text = "Score: " + shownScore + " | Level: " + shownLevel;
+        if (SwingUtilities.isEventDispatchThread()) {
+            label.setText(text);
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    label.setText(text);
+                }
+            });
         }
     }
     
     /**
-     * Creates a platform structure of blocks.
+     * Sets the score label reference.
      */
-    private void createPlatform(int startX, int y, int length, int blockWidth, int blockHeight) {
-        for (int col = 0; col < length; col++) {
-            double x = startX + (col * blockWidth);
-            Block block = new Block(x, y, blockWidth, blockHeight);
-            blocks.add(block);
-        }
+    public void setScoreLabel(JLabel label) {
+        // The label is filled in on the next frame
+        this.scoreLabel = label;
+        if (!activeRendering) repaint();
     }
     
     /**
-     * Flings a word from the left side of the screen.
+     * Resets the current level.
      */
-    public void flingWord(String word) {
-        if (word.isEmpty()) return;
-        
-        // Convert word to uppercase for consistency
-        word = word.toUpperCase();
-        
-        // Calculate initial position and spacing
-        double startX = 50;
-        double startY = 250;
-        double letterSpacing = 40;
-        
-        // Create letter objects for each character
-        for (int i = 0; i < word.length(); i++) {
-            char c = word.charAt(i);
-            
-            // Calculate position with slight offset for each letter
-            double x = startX + i * letterSpacing;
-            double y = startY + (Math.random() * 10 - 5);
-            
-            // Create letter object
-            Letter letter = new Letter(x, y, c);
-            
-            // Calculate velocity based on drag if available
-            double power = 400 + (i * 20); // Base power plus increasing power for later letters
-            double angle = -30 + (Math.random() * 20); // Slightly random upward angle
-            
-            if (isDragging) {
-                // Use drag vector to determine launch direction
-                Vector2D launchVelocity = PhysicsEngine.calculateLaunchVelocity(
-                    dragStart.x, dragStart.y, 
-                    dragCurrent.x, dragCurrent.y, 
-                    power
-                );
-                letter.setVelocityX(launchVelocity.getX());
-                letter.setVelocityY(launchVelocity.getY());
-            } else {
-                // Default launch if not dragging
-                double radians = Math.toRadians(angle);
-                letter.setVelocityX(power * Math.cos(radians));
-                letter.setVelocityY(power * Math.sin(radians));
-            }
-            
-            // Add letter to lists
-            letters.add(letter);
-            gameObjects.add(letter);
-        }
-        
-        // Reset drag state
-        isDragging = false;
+    public void resetLevel() {
+        simulation.resetLevel();
     }
     
     /**
-     * Called by the game timer to update game state.
+     * Starts the simulation thread once the panel is on screen, and in active mode the
+     * render thread once the canvas can be drawn to.
      */
     @Override
-    public void actionPerformed(ActionEvent e) {
-        // Calculate time since last update
-        long currentTime = System.nanoTime();
-        deltaTime = (currentTime - lastUpdateTime) / 1_000_000_000.0;
-        lastUpdateTime = currentTime;
-        
-        // Cap delta time to prevent physics issues on lag
-        if (deltaTime > 0.1) deltaTime = 0.1;
-        
-        // Update physics
-        PhysicsEngine.update(gameObjects, deltaTime);
+    public void addNotify() {
+        super.addNotify();
+        simulation.start();
+        if (!activeRendering || renderThread != null) return;
         
-        // Check for completed level
-        checkLevelProgress();
-        
-        // Remove inactive objects
-        cleanupInactiveObjects();
-        
-        // Redraw the panel
-        repaint();
+        canvas.createBufferStrategy(2);
+        long framePeriod = 1_000_000_000L / framesPerSecond();
+        rendering = true;
+        renderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                renderLoop(framePeriod);
+            }
+        }, "WordFlinger render");
+        renderThread.setDaemon(true);
+        renderThread.start();
     }
     
     /**
-     * Checks level progress to see if it's complete.
+     * Stops the simulation thread, and in active mode the render thread before the
+     * canvas goes away.
      */
-    private void checkLevelProgress() {
-        // Count active blocks
-        int activeBlocks = 0;
-        int damagedBlocks = 0;
-        
-        for (Block block : blocks) {
-            if (block.isActive()) {
-                activeBlocks++;
-                if (block.isHit() && block.getHealth() < 50) {
-                    damagedBlocks++;
-                }
+    @Override
+    public void removeNotify() {
+        simulation.stop();
+        if (renderThread != null) {
+            rendering = false;
+            try {
+                renderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            renderThread = null;
         }
-        
-        // Level is complete if most blocks are damaged or inactive
-        if (activeBlocks > 0 && damagedBlocks >= activeBlocks * 0.7) {
-            score += 100 + (currentLevel * 50);
-            currentLevel++;
-            setupLevel(currentLevel);
-            updateScore();
-        }
+        super.removeNotify();
     }
     
     /**
-     * Removes inactive game objects from lists.
+     * Gets the frame rate for active mode: wordflinger.fps if set, otherwise the
+     * display's refresh rate, or DEFAULT_FPS if that is unknown.
      */
-    private void cleanupInactiveObjects() {
-        // Create lists for objects to remove
-        List<GameObject> objectsToRemove = new ArrayList<>();
-        List<Letter> lettersToRemove = new ArrayList<>();
-        List<Block> blocksToRemove = new ArrayList<>();
+    private int framesPerSecond() {
+        int fps = Integer.getInteger("wordflinger.fps", 0);
+        if (fps > 0) return fps;
         
-        // Find inactive objects
-        for (GameObject obj : gameObjects) {
-            if (!obj.isActive()) {
-                objectsToRemove.add(obj);
-                
-                if (obj instanceof Letter) {
-                    lettersToRemove.add((Letter)obj);
-                } else if (obj instanceof Block) {
-                    blocksToRemove.add((Block)obj);
-                }
-            }
+        GraphicsConfiguration gc = canvas.getGraphicsConfiguration();
+        if (gc != null) {
+            int refreshRate = gc.getDevice().getDisplayMode().getRefreshRate();
+            if (refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN) return refreshRate;
         }
-        
-        // Remove inactive objects
-        gameObjects.removeAll(objectsToRemove);
-        letters.removeAll(lettersToRemove);
-        blocks.removeAll(blocksToRemove);
+        return DEFAULT_FPS;
     }
     
     /**
-     * Updates the score display.
+     * Draws the game once a frame until rendering stops. Frames that run late are not
+     * made up for, so a stall doesn't set off a burst of frames.
      */
-    private void updateScore() {
-        if (scoreLabel != null) {
-            scoreLabel.setText("Score: " + score + " | Level: " + currentLevel);
+    private void renderLoop(long framePeriod) {
+        BufferStrategy strategy = canvas.getBufferStrategy();
+        long nextFrame = System.nanoTime();
+        while (rendering) {
+            // Redraw until the frame survives, in case the buffers' contents are lost
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        render(g, canvas.getGraphicsConfiguration(), canvas.getWidth(), canvas.getHeight());
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+            
+            // Wait for the next frame, sleeping most of the way and spinning the rest
+            nextFrame += framePeriod;
+            long now = System.nanoTime();
+            if (now - nextFrame > framePeriod) {
+                nextFrame = now;
+            }
+            long wait;
+            while ((wait = nextFrame - System.nanoTime()) > 0) {
+                if (wait > 2_000_000) {
+                    LockSupport.parkNanos(wait - 1_000_000);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
         }
     }
     
     /**
-     * Sets the score label reference.
-     */
-    public void setScoreLabel(JLabel label) {
-        this.scoreLabel = label;
-        updateScore();
-    }
-    
-    /**
-     * Resets the current level.
+     * Renders the game.
      */
-    public void resetLevel() {
-        setupLevel(currentLevel);
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (activeRendering) return;
+        render((Graphics2D) g, getGraphicsConfiguration(), getWidth(), getHeight());
     }
     
     /**
-     * Renders the game.
+     * Draws the latest snapshot of the game onto a surface of the given size.
      */
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+    private void render(Graphics2D g2d, GraphicsConfiguration gc, int width, int height) {
+        RenderSnapshot snapshot = simulation.latestSnapshot();
+        updateScore(snapshot);
         
         // Enable anti-aliasing for smoother rendering
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        // Draw background with gradient
-        GradientPaint bgGradient = new GradientPaint(
-            0, 0, new Color(220, 240, 255), 
-            0, getHeight(), new Color(180, 210, 240)
-        );
-        g2d.setPaint(bgGradient);
-        g2d.fillRect(0, 0, getWidth(), getHeight());
+        // Draw the cached sky and floor; they cover the whole panel, so it isn't cleared first
+        scenery.update(width, height, snapshot.getLevel());
+        scenery.drawBackground(g2d, gc);
         
-        // Draw floor
-        g2d.setColor(new Color(100, 100, 100));
-        g2d.fillRect(0, 500, getWidth(), 20);
+        // Draw all game objects, blended towards the latest physics step
+        snapshot.render(g2d, System.nanoTime());
         
-        // Draw all game objects
-        for (GameObject obj : gameObjects) {
-            obj.render(g2d);
-        }
-        
-        // Draw slingshot area on left side
-        g2d.setColor(new Color(100, 70, 30));
-        g2d.fillRect(30, 380, 10, 120);
-        g2d.fillRect(80, 380, 10, 120);
-        g2d.fillOval(25, 370, 20, 20);
-        g2d.fillOval(75, 370, 20, 20);
-        
-        // Draw elastic band
-        g2d.setColor(new Color(200, 30, 30));
-        g2d.setStroke(new BasicStroke(3f));
-        g2d.drawLine(35, 380, 85, 380);
+        // Draw the cached slingshot and instructions in front of the objects
+        scenery.drawOverlay(g2d, gc);
         
         // Draw drag line if dragging
+        Point dragStart = this.dragStart;
+        Point dragCurrent = this.dragCurrent;
         if (isDragging && dragStart != null && dragCurrent != null) {
             g2d.setColor(Color.RED);
-            g2d.setStroke(new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g2d.setStroke(DRAG_STROKE);
             g2d.drawLine(dragStart.x, dragStart.y, dragCurrent.x, dragCurrent.y);
             
             // Draw arrow head
@@ -371,14 +306,6 @@ public class GamePanel extends JPanel implements ActionListener, MouseListener,
             g2d.drawLine(dragCurrent.x, dragCurrent.y, x1, y1);
             g2d.drawLine(dragCurrent.x, dragCurrent.y, x2, y2);
         }
-        
-        // Draw level and instructions
-        g2d.setColor(Color.BLACK);
-        g2d.setFont(new Font("Arial", Font.BOLD, 16));
-        g2d.drawString("Level: " + currentLevel, 20, 30);
-        g2d.setFont(new Font("Arial", Font.PLAIN, 12));
-        g2d.drawString("Enter a word and click 'Fling!' or drag to aim", 20, 50);
-        g2d.drawString("Goal: Knock down the blocks with letters", 20, 70);
     }
     
     /**
@@ -400,9 +327,9 @@ public class GamePanel extends JPanel implements ActionListener, MouseListener,
     
     @Override
     public void mouseDragged(MouseEvent e) {
-        // Update current drag position
+        // Update current drag position; the render thread picks it up in active mode
         dragCurrent = e.getPoint();
-        repaint();
+        if (!activeRendering) repaint();
     }
     
     // Unused mouse event methods
@@ -0,0 +1,99 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Letter sprites, each a colored circle with a white character centered on it, drawn
+ * once and packed side by side into shared sheets. Drawing a letter is then a single
+ * copy from its sheet. A sprite is drawn the first time a character is asked for in a
+ * color, and sheets are added as they fill up. The atlas is meant to be used from the
+ * thread that renders.
+ */
+class GlyphAtlas {
+    // Sprites per row and rows per sheet
+    static final int COLUMNS = 32;
+    static final int ROWS = 8;
+    
+    private final int size;
+    private final Font font;
+    private final List<BufferedImage> sheets = new ArrayList<>();
+    
+    // Sprite index by color in the high half and character in the low half
+    private final Map<Long, Integer> sprites = new HashMap<>();
+    
+    /**
+     * Constructs an empty atlas of square sprites with the given side, with the
+     * character drawn in a bold font of the same size.
+     */
+    GlyphAtlas(int size) {
+        this.size = size;
+        this.font = new Font("Arial", Font.BOLD, size);
+    }
+    
+    /**
+     * Gets the index of the sprite for a character on a circle of the given RGB color,
+     * drawing it first if this is the first time it is asked for.
+     */
+    int sprite(GraphicsConfiguration gc, char c, int rgb) {
+        Long key = ((long) rgb << 32) | c;
+        Integer sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = sprites.size();
+            drawSprite(gc, sprite, c, rgb);
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+    
+    /**
+     * Draws a sprite with its top left corner at the given position.
+     */
+    void draw(Graphics2D g, int sprite, int x, int y) {
+        BufferedImage sheet = sheets.get(sprite / (COLUMNS * ROWS));
+        int cell = sprite % (COLUMNS * ROWS);
+        int sx = (cell % COLUMNS) * size;
+        int sy = (cell / COLUMNS) * size;
+        g.drawImage(sheet, x, y, x + size, y + size, sx, sy, sx + size, sy + size, null);
+    }
+    
+    /**
+     * Draws a sprite into its cell, adding a sheet if the last one is full.
+     */
+    private void drawSprite(GraphicsConfiguration gc, int sprite, char c, int rgb) {
+        int sheetIndex = sprite / (COLUMNS * ROWS);
+        if (sheetIndex == sheets.size()) {
+            // Sheets match the screen's pixel layout so copies from them stay cheap
+            sheets.add(gc != null
+                    ? gc.createCompatibleImage(COLUMNS * size, ROWS * size, Transparency.TRANSLUCENT)
+                    : new BufferedImage(COLUMNS * size, ROWS * size, BufferedImage.TYPE_INT_ARGB_PRE));
+        }
+        
+        int cell = sprite % (COLUMNS * ROWS);
+        Graphics2D g = sheets.get(sheetIndex).createGraphics();
+        try {
+            // Keep the character from spilling into the neighbouring cells
+            g.translate((cell % COLUMNS) * size, (cell / COLUMNS) * size);
+            g.clipRect(0, 0, size, size);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            
+            // Draw the circle background for the letter
+            g.setColor(new Color(rgb));
+            g.fillOval(0, 0, size, size);
+            
+            // Center the letter in the circle
+            g.setColor(Color.WHITE);
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics(font);
+            int textX = (int) ((size - metrics.charWidth(c)) / 2.0);
+            int textY = (int) ((size - metrics.getHeight()) / 2.0 + metrics.getAscent());
+            g.drawString(String.valueOf(c), textX, textY);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package game;
+
+/**
+ * Integrates every body of a world over one step, with the same results as
+ * PhysicsEngine.integrateRange over all handles.
+ */
+interface IntegrationKernel {
+    /**
+     * Records each body's position as its previous one, then moves every awake body by
+     * its velocity and applies gravity, the given drag factor and its speed limit.
+     */
+    void integrate(PhysicsWorld world, double deltaTime, double drag);
+}
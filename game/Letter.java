@@ -8,16 +8,34 @@ import java.awt.geom.Rectangle2D;
  */
 public class Letter extends GameObject {
     private char letter;
-    private Font font;
     private static final double LETTER_SIZE = 30;
+    private static final double COLLISION_PADDING = LETTER_SIZE * 0.2;
+    
+    // Sprites shared by every letter, created on first draw so a headless simulation
+    // never loads AWT
+    private static GlyphAtlas atlas;
+    
+    // This letter's sprite in the atlas, or -1 until it is first drawn, and the color
+    // it was drawn in
+    private int sprite = -1;
+    private int spriteRgb;
+    
+    // Collision category of letters
+    public static final int CATEGORY = 1 << 2;
     
     /**
      * Constructs a letter game object.
      */
-    public Letter(double x, double y, char letter) {
-        super(x, y, LETTER_SIZE, LETTER_SIZE, LETTER_SIZE * 0.2);
+    public Letter(PhysicsWorld world, double x, double y, char letter) {
+        super(world, x, y, LETTER_SIZE, LETTER_SIZE, LETTER_SIZE * 0.2);
         this.letter = letter;
-        this.font = new Font("Arial", Font.BOLD, (int)LETTER_SIZE);
+        
+        // Letters collide as circles: with each other at 90% of their radius, and with
+        // blocks as the circle inside their bounds shrunk by the padding
+        world.shape[handle] = PhysicsWorld.SHAPE_CIRCLE;
+        world.inset[handle] = COLLISION_PADDING;
+        world.type[handle] = CollisionDispatch.TYPE_LETTER;
+        world.category[handle] = CATEGORY;
         
         // Assign color based on letter
         assignColor();
@@ -30,45 +48,29 @@ public class Letter extends GameObject {
         // Colors based on vowels, consonants, or special characters
         if ("AEIOU".indexOf(Character.toUpperCase(letter)) >= 0) {
             // Vowels are red
-            color = new Color(220, 50, 50);
+            rgb = 0xdc3232;
         } else if (Character.isLetter(letter)) {
             // Consonants are blue
-            color = new Color(50, 50, 220);
+            rgb = 0x3232dc;
         } else {
             // Special characters are green
-            color = new Color(50, 220, 50);
+            rgb = 0x32dc32;
         }
     }
     
     /**
-     * Renders the letter on the screen.
+     * Draws the letter as a single copy of its sprite.
      */
     @Override
-    public void render(Graphics2D g) {
-        if (!active) return;
-        
-        // Save original color and font
-        Color originalColor = g.getColor();
-        Font originalFont = g.getFont();
-        
-        // Draw the circle background for the letter
-        g.setColor(color);
-        g.fillOval((int)x, (int)y, (int)width, (int)height);
-        
-        // Draw the letter
-        g.setColor(Color.WHITE);
-        g.setFont(font);
-        
-        // Center the letter in the circle
-        FontMetrics metrics = g.getFontMetrics(font);
-        int textX = (int)(x + (width - metrics.charWidth(letter)) / 2);
-        int textY = (int)(y + ((height - metrics.getHeight()) / 2) + metrics.getAscent());
-        
-        g.drawString(String.valueOf(letter), textX, textY);
-        
-        // Restore original color and font
-        g.setColor(originalColor);
-        g.setFont(originalFont);
+    void draw(Graphics2D g, int x, int y, int width, int height, int rgb, int state) {
+        if (atlas == null) {
+            atlas = new GlyphAtlas((int)LETTER_SIZE);
+        }
+        if (sprite < 0 || rgb != spriteRgb) {
+            sprite = atlas.sprite(g.getDeviceConfiguration(), letter, rgb);
+            spriteRgb = rgb;
+        }
+        atlas.draw(g, sprite, x, y);
     }
     
     /**
@@ -85,24 +87,8 @@ public class Letter extends GameObject {
     public Rectangle2D.Double getBounds() {
         // For more accurate collision with circular objects, we use a slightly smaller rectangle
         // This helps prevent excessive overlapping with blocks
-        double padding = LETTER_SIZE * 0.2;
-        return new Rectangle2D.Double(x + padding, y + padding, width - padding * 2, height - padding * 2);
-    }
-    
-    /**
-     * Custom collision detection for circular letters.
-     */
-    @Override
-    public boolean collidesWith(GameObject other) {
-        if (other instanceof Letter) {
-            // For letter-to-letter collisions, use circle collision detection
-            Letter otherLetter = (Letter) other;
-            double dx = (this.x + this.width/2) - (otherLetter.x + otherLetter.width/2);
-            double dy = (this.y + this.height/2) - (otherLetter.y + otherLetter.height/2);
-            double distance = Math.sqrt(dx*dx + dy*dy);
-            return distance < (this.width/2 + otherLetter.width/2) * 0.9; // 90% of combined radii
-        }
-        // For other objects use default rectangle collision
-        return super.collidesWith(other);
+        double padding = COLLISION_PADDING;
+        return new Rectangle2D.Double(getX() + padding, getY() + padding,
+                getWidth() - padding * 2, getHeight() - padding * 2);
     }
 }
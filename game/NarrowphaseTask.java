@@ -0,0 +1,58 @@
+package game;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the narrowphase over a range of the world's candidate pairs, flagging the pairs
+ * whose bodies overlap. Large ranges are split in half and run as fork/join subtasks.
+ * Each pair's flag sits at the pair's own index, so the flags come out in pair order
+ * however the work was split.
+ */
+class NarrowphaseTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    
+    // Ranges with fewer pairs than this are tested on the current thread
+    static final int SPLIT_THRESHOLD = 256;
+    
+    private final PhysicsWorld world;
+    private final int from, to;
+    
+    /**
+     * Constructs a task testing the pairs in [from, to).
+     */
+    NarrowphaseTask(PhysicsWorld world, int from, int to) {
+        this.world = world;
+        this.from = from;
+        this.to = to;
+    }
+    
+    /**
+     * Tests the range, splitting it in half first if it is large.
+     */
+    @Override
+    protected void compute() {
+        if (to - from <= SPLIT_THRESHOLD) {
+            flagOverlaps(world, from, to);
+            return;
+        }
+        
+        int mid = (from + to) >>> 1;
+        invokeAll(new NarrowphaseTask(world, from, mid), new NarrowphaseTask(world, mid, to));
+    }
+    
+    /**
+     * Flags which pairs in [from, to) overlap, on the current thread.
+     */
+    static void flagOverlaps(PhysicsWorld world, int from, int to) {
+        PairBuffer pairs = world.pairs;
+        boolean[] active = world.active;
+        boolean[] overlapping = world.pairOverlaps;
+        for (int pair = from; pair < to; pair++) {
+            int i = pairs.first(pair);
+            int j = pairs.second(pair);
+            // Pairs whose collision filters reject each other skip the narrowphase
+            overlapping[pair] = active[i] && active[j] && PhysicsEngine.shouldCollide(world, i, j)
+                    && PhysicsEngine.collides(world, i, j);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of index pairs, packed into longs so it can be sorted without allocation.
+ */
+public class PairBuffer {
+    private long[] pairs = new long[256];
+    private int size = 0;
+    
+    /**
+     * Adds a pair of indices. The pair is stored with the smaller index first.
+     */
+    public void add(int a, int b) {
+        if (size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, size * 2);
+        }
+        if (a < b) {
+            pairs[size++] = ((long) a << 32) | b;
+        } else {
+            pairs[size++] = ((long) b << 32) | a;
+        }
+    }
+    
+    /**
+     * Sorts the pairs by first then second index and removes duplicates.
+     */
+    public void sortUnique() {
+        if (size < 2) return;
+        
+        sort(pairs, 0, size);
+        int unique = 1;
+        for (int k = 1; k < size; k++) {
+            if (pairs[k] != pairs[unique - 1]) {
+                pairs[unique++] = pairs[k];
+            }
+        }
+        size = unique;
+    }
+    
+    /**
+     * Sorts a range of longs in place. Unlike Arrays.sort this never allocates, which
+     * keeps the physics tick free of garbage on large, partly sorted inputs.
+     */
+    static void sort(long[] values, int from, int to) {
+        while (to - from > 16) {
+            // Median-of-three pivot, then partition around it
+            int mid = (from + to) >>> 1;
+            long pivot = median(values[from], values[mid], values[to - 1]);
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    long swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            
+            // Recurse into the smaller side and loop on the larger to bound the stack depth
+            if (j - from < to - i) {
+                sort(values, from, j + 1);
+                from = i;
+            } else {
+                sort(values, i, to);
+                to = j + 1;
+            }
+        }
+        
+        // Insertion sort for short ranges
+        for (int k = from + 1; k < to; k++) {
+            long value = values[k];
+            int m = k - 1;
+            while (m >= from && values[m] > value) {
+                values[m + 1] = values[m];
+                m--;
+            }
+            values[m + 1] = value;
+        }
+    }
+    
+    private static long median(long a, long b, long c) {
+        if (a < b) {
+            return b < c ? b : (a < c ? c : a);
+        }
+        return a < c ? a : (b < c ? c : b);
+    }
+    
+    /**
+     * Gets the smaller index of the pair at the given position.
+     */
+    public int first(int k) {
+        return (int) (pairs[k] >>> 32);
+    }
+    
+    /**
+     * Gets the larger index of the pair at the given position.
+     */
+    public int second(int k) {
+        return (int) pairs[k];
+    }
+    
+    /**
+     * Gets the number of pairs in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Removes all pairs, keeping the allocated storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
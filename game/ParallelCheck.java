@@ -0,0 +1,67 @@
+package game;
+
+/**
+ * Checks that the fork/join narrowphase doesn't change the physics. For each seed a
+ * tower level is hit by a volley of fast letters twice, once with the narrowphase on
+ * the current thread and once on the fork/join pool, and both runs must end in the same
+ * state hash. Exits with status 1 on any mismatch. Run with:
+ * java game.ParallelCheck [seeds] [towers] [height] [ticks]
+ */
+public class ParallelCheck {
+    private static final double STEP = 1 / 60.0;
+    private static final double BLOCK_SIZE = 10;
+    private static final int LETTERS = 40;
+    
+    /**
+     * Runs the check.
+     */
+    public static void main(String[] args) {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int towers = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 25;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 300;
+        
+        boolean failed = false;
+        for (long seed = 1; seed <= seeds; seed++) {
+            long serial = run(seed, Integer.MAX_VALUE, towers, height, ticks);
+            long parallel = run(seed, 0, towers, height, ticks);
+            System.out.printf("Seed %d: serial %016x, parallel %016x%s%n", seed, serial, parallel,
+                    serial == parallel ? "" : "  MISMATCH");
+            failed |= serial != parallel;
+        }
+        
+        if (failed) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Builds the tower level, throws the letters into it a quarter of the way through,
+     * and returns the world's state hash at the end.
+     */
+    private static long run(long seed, int parallelThreshold, int towers, int height, int ticks) {
+        PhysicsWorld world = new PhysicsWorld(new SpatialHashBroadphase());
+        world.setSeed(seed);
+        world.setParallelThreshold(parallelThreshold);
+        
+        double spacing = PhysicsEngine.WORLD_WIDTH / towers;
+        for (int t = 0; t < towers; t++) {
+            for (int row = 0; row < height; row++) {
+                new Block(world, t * spacing + (spacing - BLOCK_SIZE) / 2,
+                        PhysicsEngine.WORLD_HEIGHT - (row + 1) * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE);
+            }
+        }
+        
+        for (int tick = 0; tick < ticks; tick++) {
+            if (tick == ticks / 4) {
+                for (int k = 0; k < LETTERS; k++) {
+                    Letter letter = new Letter(world, 20, 20 + k * 10, (char) ('A' + k % 26));
+                    letter.setVelocityX(600 + world.getRandom().nextDouble() * 300);
+                    letter.setVelocityY(-world.getRandom().nextDouble() * 200);
+                }
+            }
+            PhysicsEngine.update(world, STEP);
+        }
+        return world.stateHash();
+    }
+}
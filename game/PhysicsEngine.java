@@ -1,6 +1,7 @@
 package game;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Handles physics calculations for the game.
@@ -9,75 +10,682 @@ public class PhysicsEngine {
     // Physics constants
     public static final double GRAVITY = 9.8 * 30;  // Gravity force (adjusted for game scale)
     public static final double RESTITUTION = 0.7;   // Bounciness factor
+    public static final double DRAG = 0.99;         // Velocity kept per DRAG_STEP
+    public static final double DRAG_STEP = 1 / 60.0;
+    // Sliding velocity kept per DRAG_STEP by a body on the floor
+    public static final double FLOOR_FRICTION = 0.9;
+    
+    // World bounds; objects falling below the floor are deactivated
+    public static final double WORLD_WIDTH = 1000;
+    public static final double WORLD_HEIGHT = 500;
+    
+    // Sleeping: bodies whose smoothed speed stays below SLEEP_VELOCITY for SLEEP_TICKS ticks
+    // stop being simulated until something hits them faster than WAKE_VELOCITY
+    public static final double SLEEP_VELOCITY = 20.0;
+    public static final int SLEEP_TICKS = 30;
+    public static final double WAKE_VELOCITY = 60.0;
+    // Weight of the newest tick in the smoothed speed
+    public static final double SLEEP_SMOOTHING = 0.1;
+    // Bodies closer than this are treated as touching when waking an island, so the
+    // broadphase reports pairs this far apart
+    public static final double ISLAND_CONTACT_MARGIN = 2.0;
+    
+    // Solver: each contact's accumulated impulse is cached between ticks and replayed,
+    // scaled by WARM_START_FACTOR, so resting stacks converge in few iterations
+    public static final int DEFAULT_SOLVER_ITERATIONS = 8;
+    // The solver stops iterating once no contact in a pass was pushed apart further than
+    // the position tolerance or had its speed changed by more than the velocity tolerance
+    public static final double DEFAULT_POSITION_TOLERANCE = 1.0;
+    public static final double DEFAULT_VELOCITY_TOLERANCE = 10.0;
+    public static final double WARM_START_FACTOR = 0.8;
+    // Contacts closing slower than this don't bounce, so resting bodies stay at rest
+    public static final double RESTITUTION_THRESHOLD = 30.0;
+    
+    // Circles and boxes overlapping by less than this don't collide
+    public static final double CIRCLE_BOX_MIN_DEPTH = 0.1;
+    
+    // Continuous collision: circles moving faster than this are swept against boxes, so
+    // a large step can't carry them through a thin block. A swept circle stops once it
+    // is CCD_PENETRATION deep in the first box it hits, so the solver sees the contact
+    public static final double CCD_VELOCITY = 240.0;
+    public static final double CCD_PENETRATION = 1.0;
+    
+    // Worlds with at least this many handles are integrated with the Vector API kernel,
+    // when it is available
+    public static final int SIMD_THRESHOLD = 256;
+    private static final IntegrationKernel VECTOR_KERNEL = loadVectorKernel();
+    
+    // Worlds with at least this many bodies run the narrowphase on the fork/join pool
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
     
     /**
-     * Updates all game objects according to physics rules.
+     * Updates all bodies in the world according to physics rules.
      */
-    public static void update(List<GameObject> gameObjects, double deltaTime) {
-        // Update positions of all objects
-        for (GameObject obj : gameObjects) {
-            if (obj.isActive()) {
-                obj.update(deltaTime);
+    public static void update(PhysicsWorld world, double deltaTime) {
+        long startTime = System.nanoTime();
+        
+        integrate(world, deltaTime);
+        moveKinematicBodies(world, deltaTime);
+        checkWallCollisions(world, deltaTime);
+        
+        // Contacts touched during this tick are kept in the contact cache
+        world.tick++;
+        
+        PairBuffer pairs = world.pairs;
+        boolean[] active = world.active;
+        
+        // Iterate until the contacts stop moving, up to the limit; deep stacks need more
+        // passes, and a world with nothing touching needs one
+        int iterations = 0;
+        while (iterations < world.solverIterations) {
+            iterations++;
+            world.solverPass++;
+            
+            // Find candidate pairs, sorted so they are visited in handle order. Pairs just
+            // short of touching are included so waking an island reaches across them
+            pairs.clear();
+            world.broadphase.findPairs(world, pairs, ISLAND_CONTACT_MARGIN);
+            pairs.sortUnique();
+            
+            // Fast circles are swept before the first pass, while the broadphase holds
+            // this step's bounds
+            if (iterations == 1 && sweepFastBodies(world)) {
+                pairs.sortUnique();
             }
+            
+            // On large worlds, flag the candidate pairs that overlap on the fork/join pool
+            // first, and the colored solver always works from the flags. Otherwise each
+            // pair is tested as it is resolved, so it sees the earlier pairs' corrections.
+            // Only contacts move bodies during a pass, so a pair the flags rule out can
+            // have come into contact only if an earlier pair of the pass moved one of its
+            // bodies; the serial loop tests those again, and so gets the same contacts
+            // whether or not the flags were computed
+            boolean parallel = world.getBodyCount() >= world.parallelThreshold
+                    && pairs.size() > NarrowphaseTask.SPLIT_THRESHOLD;
+            boolean flagged = parallel || world.coloredSolver != null;
+            if (flagged) {
+                if (world.pairOverlaps.length < pairs.size()) {
+                    world.pairOverlaps = new boolean[Math.max(pairs.size(), world.pairOverlaps.length * 2)];
+                }
+                if (parallel) {
+                    ForkJoinPool.commonPool().invoke(new NarrowphaseTask(world, 0, pairs.size()));
+                } else {
+                    NarrowphaseTask.flagOverlaps(world, 0, pairs.size());
+                }
+            }
+            
+            // The largest correction of any contact, relative to the tolerances
+            double residual = 0;
+            
+            if (world.coloredSolver != null) {
+                residual = world.coloredSolver.solve(world);
+                if (residual < 1) break;
+                continue;
+            }
+            
+            // Resolve collisions in handle order
+            int pair = 0;
+            for (int i = 0; i < world.size; i++) {
+                if (!active[i]) continue;
+                
+                // Check for collisions with the candidates for this body
+                while (pair < pairs.size() && pairs.first(pair) < i) {
+                    pair++;
+                }
+                for (; pair < pairs.size() && pairs.first(pair) == i; pair++) {
+                    int j = pairs.second(pair);
+                    if (flagged && !world.pairOverlaps[pair] && !movedThisPass(world, i)
+                            && !movedThisPass(world, j)) {
+                        continue;
+                    }
+                    if (!active[j]) continue;
+                    
+                    // Pairs whose collision filters reject each other are never resolved
+                    if (!shouldCollide(world, i, j)) continue;
+                    
+                    // Two sleeping bodies are at rest against each other
+                    if (atRest(world, i, j)) continue;
+                    
+                    // Resolving earlier pairs may have pushed a flagged pair apart
+                    if (collides(world, i, j)) {
+                        wakeOnImpact(world, i, j);
+                        residual = Math.max(residual,
+                                resolveCollision(world, i, j, world.contacts.findOrAdd(contactKey(world, i, j))));
+                        world.dispatch.onContact(world, i, j);
+                    }
+                }
+            }
+            
+            if (residual < 1) break;
         }
+        world.lastSolverIterations = iterations;
+        world.totalSolverIterations += iterations;
         
-        // Multiple iterations for more stable physics
-        // More iterations = more stable physics (but more CPU intensive)
-        final int ITERATIONS = 3;
+        // Forget contacts that have come apart
+        world.contacts.evictStale(world.tick);
+        
+        updateSleepState(world, deltaTime);
+        
+        world.lastUpdateNanos = System.nanoTime() - startTime;
+    }
+    
+    /**
+     * Moves every awake body by its velocity, then applies gravity and drag.
+     */
+    private static void integrate(PhysicsWorld world, double deltaTime) {
+        // Drag is scaled to the step length so it doesn't depend on the step rate. Math.pow
+        // may round differently once compiled, so StrictMath keeps runs reproducible
+        double drag = StrictMath.pow(DRAG, deltaTime / DRAG_STEP);
+        
+        if (VECTOR_KERNEL != null && world.size >= SIMD_THRESHOLD) {
+            VECTOR_KERNEL.integrate(world, deltaTime, drag);
+        } else {
+            integrateRange(world, 0, world.size, deltaTime, drag);
+        }
+    }
+    
+    /**
+     * Integrates the bodies with handles in [from, to) one at a time. This is the
+     * reference the vector kernel has to match, and handles the bodies left over
+     * after its last full vector.
+     */
+    static void integrateRange(PhysicsWorld world, int from, int to, double deltaTime, double drag) {
+        double[] x = world.x, y = world.y;
+        double[] velocityX = world.velocityX, velocityY = world.velocityY;
+        double[] maxSpeed = world.maxSpeed;
+        boolean[] active = world.active, sleeping = world.sleeping;
+        
+        for (int i = from; i < to; i++) {
+            world.previousX[i] = x[i];
+            world.previousY[i] = y[i];
+            if (!active[i] || sleeping[i]) continue;
+            
+            // Update position based on velocity
+            x[i] += velocityX[i] * deltaTime;
+            y[i] += velocityY[i] * deltaTime;
+            
+            // Apply gravity
+            velocityY[i] += GRAVITY * deltaTime;
+            
+            // Apply drag/friction
+            velocityX[i] *= drag;
+            velocityY[i] *= drag;
+            
+            // Limit maximum velocity for bodies that have one
+            if (Math.abs(velocityX[i]) > maxSpeed[i]) {
+                velocityX[i] = Math.signum(velocityX[i]) * maxSpeed[i];
+            }
+            if (Math.abs(velocityY[i]) > maxSpeed[i]) {
+                velocityY[i] = Math.signum(velocityY[i]) * maxSpeed[i];
+            }
+            
+            // If body is out of bounds, deactivate it
+            if (y[i] > WORLD_HEIGHT) {
+                active[i] = false;
+            }
+        }
+    }
+    
+    /**
+     * Moves kinematic bodies by their velocity. They count as asleep, so integration
+     * left them in place. A moving kinematic body wakes whatever sleeps on it, which
+     * would otherwise be left hanging as it moves away.
+     */
+    private static void moveKinematicBodies(PhysicsWorld world, double deltaTime) {
+        byte[] motion = world.motion;
+        for (int i = 0; i < world.size; i++) {
+            if (motion[i] != PhysicsWorld.MOTION_KINEMATIC || !world.active[i]) continue;
+            if (world.velocityX[i] == 0 && world.velocityY[i] == 0) continue;
+            
+            wakeTouching(world, i);
+            world.x[i] += world.velocityX[i] * deltaTime;
+            world.y[i] += world.velocityY[i] * deltaTime;
+        }
+    }
+    
+    /**
+     * Moves each fast circle back to where its path this step first hits a box, if it
+     * hit one, and returns whether any circle was moved. The bodies near each path are
+     * found with the broadphase, so each circle is only swept against its neighbours,
+     * and a circle that is moved is paired with all of them, since wherever it stops on
+     * its path they hold its new candidates. The pairs then need sorting again.
+     */
+    private static boolean sweepFastBodies(PhysicsWorld world) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        boolean[] active = world.active;
+        Broadphase broadphase = world.broadphase;
+        boolean moved = false;
         
-        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
-            // Check for and resolve collisions
-            for (int i = 0; i < gameObjects.size(); i++) {
-                GameObject obj1 = gameObjects.get(i);
-                if (!obj1.isActive()) continue;
+        for (int i = 0; i < world.size; i++) {
+            if (!active[i] || world.sleeping[i] || world.shape[i] != PhysicsWorld.SHAPE_CIRCLE) continue;
+            
+            double vx = world.velocityX[i];
+            double vy = world.velocityY[i];
+            if (vx * vx + vy * vy <= CCD_VELOCITY * CCD_VELOCITY) continue;
+            
+            // Sweep the circle the narrowphase tests, by its center
+            double radius = Math.min(width[i], height[i]) / 2 - world.inset[i];
+            double startX = world.previousX[i] + width[i] / 2;
+            double startY = world.previousY[i] + height[i] / 2;
+            double dx = x[i] - world.previousX[i];
+            double dy = y[i] - world.previousY[i];
+            
+            // Only bodies near the area the circle's bounds passed through can be hit
+            int found = broadphase.query(world,
+                    Math.min(world.previousX[i], x[i]) - ISLAND_CONTACT_MARGIN,
+                    Math.min(world.previousY[i], y[i]) - ISLAND_CONTACT_MARGIN,
+                    Math.max(world.previousX[i], x[i]) + width[i] + ISLAND_CONTACT_MARGIN,
+                    Math.max(world.previousY[i], y[i]) + height[i] + ISLAND_CONTACT_MARGIN);
+            
+            // Find when the circle is first CCD_PENETRATION deep in a box
+            double sweptRadius = Math.max(0, radius - CCD_PENETRATION);
+            double impact = 1;
+            for (int k = 0; k < found; k++) {
+                int j = broadphase.getResult(k);
+                if (j == i || !active[j] || world.shape[j] != PhysicsWorld.SHAPE_BOX
+                        || !shouldCollide(world, i, j)) continue;
                 
-                // Check for collisions with walls first
-                checkWallCollisions(obj1);
+                impact = Math.min(impact, timeOfImpact(startX, startY, dx, dy, sweptRadius,
+                        x[j], y[j], x[j] + width[j], y[j] + height[j]));
+            }
+            
+            if (impact < 1) {
+                x[i] = world.previousX[i] + dx * impact;
+                y[i] = world.previousY[i] + dy * impact;
+                for (int k = 0; k < found; k++) {
+                    int j = broadphase.getResult(k);
+                    if (j != i && active[j]) {
+                        world.pairs.add(i, j);
+                    }
+                }
+                moved = true;
+            }
+        }
+        return moved;
+    }
+    
+    /**
+     * Finds the fraction of a path from (startX, startY) along (dx, dy) at which a
+     * circle of the given radius centered on it first touches a box, or 1 if it misses
+     * the box or starts touching it. The center then enters the box grown by the radius
+     * with rounded corners, which is two rectangles, the box grown across and grown
+     * along, and a circle on each corner.
+     */
+    static double timeOfImpact(double startX, double startY, double dx, double dy, double radius,
+                               double minX, double minY, double maxX, double maxY) {
+        // Starting in touch means the bodies already collide, which the solver handles
+        double closestX = Math.max(minX, Math.min(maxX, startX)) - startX;
+        double closestY = Math.max(minY, Math.min(maxY, startY)) - startY;
+        if (closestX * closestX + closestY * closestY < radius * radius) return 1;
+        
+        // Starting outside every part, the path enters the whole where it first enters a part
+        double impact = Math.min(
+                boxTimeOfImpact(startX, startY, dx, dy, minX - radius, minY, maxX + radius, maxY),
+                boxTimeOfImpact(startX, startY, dx, dy, minX, minY - radius, maxX, maxY + radius));
+        impact = Math.min(impact, circleTimeOfImpact(startX, startY, dx, dy, minX, minY, radius));
+        impact = Math.min(impact, circleTimeOfImpact(startX, startY, dx, dy, maxX, minY, radius));
+        impact = Math.min(impact, circleTimeOfImpact(startX, startY, dx, dy, minX, maxY, radius));
+        impact = Math.min(impact, circleTimeOfImpact(startX, startY, dx, dy, maxX, maxY, radius));
+        return impact;
+    }
+    
+    /**
+     * Finds the fraction of a path from (startX, startY) along (dx, dy) at which it
+     * enters a box, or 1 if it misses the box or starts inside it.
+     */
+    private static double boxTimeOfImpact(double startX, double startY, double dx, double dy,
+                                          double minX, double minY, double maxX, double maxY) {
+        // Starting inside means the bodies already touch, which the solver handles
+        if (startX > minX && startX < maxX && startY > minY && startY < maxY) return 1;
+        
+        double enter = 0, exit = 1;
+        if (dx == 0) {
+            if (startX <= minX || startX >= maxX) return 1;
+        } else {
+            double t1 = (minX - startX) / dx;
+            double t2 = (maxX - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (startY <= minY || startY >= maxY) return 1;
+        } else {
+            double t1 = (minY - startY) / dy;
+            double t2 = (maxY - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        return enter < exit ? enter : 1;
+    }
+    
+    /**
+     * Finds the fraction of a path from (startX, startY) along (dx, dy) at which it
+     * enters a circle, or 1 if it misses the circle or starts inside it.
+     */
+    private static double circleTimeOfImpact(double startX, double startY, double dx, double dy,
+                                             double centerX, double centerY, double radius) {
+        double fromX = startX - centerX;
+        double fromY = startY - centerY;
+        double a = dx * dx + dy * dy;
+        double b = fromX * dx + fromY * dy;
+        double c = fromX * fromX + fromY * fromY - radius * radius;
+        double discriminant = b * b - a * c;
+        if (a == 0 || discriminant < 0) return 1;
+        
+        // The smaller root is where the path enters; it is negative if the path starts inside
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        return t >= 0 && t < 1 ? t : 1;
+    }
+    
+    /**
+     * Puts bodies to sleep once they have barely moved for SLEEP_TICKS ticks.
+     */
+    private static void updateSleepState(PhysicsWorld world, double deltaTime) {
+        if (deltaTime <= 0) return;
+        
+        double[] averageVelocityX = world.averageVelocityX;
+        double[] averageVelocityY = world.averageVelocityY;
+        for (int i = 0; i < world.size; i++) {
+            if (!world.active[i] || world.sleeping[i]) continue;
+            
+            // Use the distance actually travelled this tick, smoothed, since bodies pressed
+            // together keep a velocity that the position corrections cancel out
+            double movedX = (world.x[i] - world.previousX[i]) / deltaTime;
+            double movedY = (world.y[i] - world.previousY[i]) / deltaTime;
+            averageVelocityX[i] += (movedX - averageVelocityX[i]) * SLEEP_SMOOTHING;
+            averageVelocityY[i] += (movedY - averageVelocityY[i]) * SLEEP_SMOOTHING;
+            
+            double vx = averageVelocityX[i];
+            double vy = averageVelocityY[i];
+            if (vx * vx + vy * vy < SLEEP_VELOCITY * SLEEP_VELOCITY) {
+                world.sleepTicks[i]++;
+                if (world.sleepTicks[i] >= SLEEP_TICKS) {
+                    world.bodies[i].sleep();
+                }
+            } else {
+                world.sleepTicks[i] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Wakes the island a sleeping body rests in if the other body hits it hard enough.
+     */
+    static void wakeOnImpact(PhysicsWorld world, int i, int j) {
+        if (world.sleeping[i] && !world.isPassive(i) && wakes(world, j)) {
+            wakeIsland(world, i);
+        } else if (world.sleeping[j] && !world.isPassive(j) && wakes(world, i)) {
+            wakeIsland(world, j);
+        }
+    }
+    
+    /**
+     * Checks whether a body wakes the sleeping bodies it runs into: it is fast enough,
+     * or it is kinematic and moving, since nothing it pushes can stop it.
+     */
+    private static boolean wakes(PhysicsWorld world, int i) {
+        if (world.motion[i] == PhysicsWorld.MOTION_KINEMATIC) {
+            return world.velocityX[i] != 0 || world.velocityY[i] != 0;
+        }
+        return speed(world, i) > WAKE_VELOCITY;
+    }
+    
+    /**
+     * Checks whether neither of two bodies can move the other: both are asleep, and
+     * neither is a kinematic body driving into the other.
+     */
+    static boolean atRest(PhysicsWorld world, int i, int j) {
+        return world.sleeping[i] && world.sleeping[j]
+                && world.motion[i] != PhysicsWorld.MOTION_KINEMATIC
+                && world.motion[j] != PhysicsWorld.MOTION_KINEMATIC;
+    }
+    
+    /**
+     * Wakes a sleeping body and every sleeping body connected to it through touching bodies.
+     */
+    private static void wakeIsland(PhysicsWorld world, int start) {
+        PairBuffer pairs = world.pairs;
+        world.bodies[start].wake();
+        int head = 0, tail = 0;
+        world.wakeQueue[tail++] = start;
+        
+        while (head < tail) {
+            int current = world.wakeQueue[head++];
+            
+            // Candidate pairs of this iteration include every touching neighbor
+            for (int k = 0; k < pairs.size(); k++) {
+                int other;
+                if (pairs.first(k) == current) {
+                    other = pairs.second(k);
+                } else if (pairs.second(k) == current) {
+                    other = pairs.first(k);
+                } else {
+                    continue;
+                }
                 
-                // Check for collisions with other objects
-                for (int j = i + 1; j < gameObjects.size(); j++) {
-                    GameObject obj2 = gameObjects.get(j);
-                    if (!obj2.isActive()) continue;
-                    
-                    if (obj1.collidesWith(obj2)) {
-                        resolveCollision(obj1, obj2);
-                        
-                        // Special case for Letter hitting Block
-                        if (obj1 instanceof Letter && obj2 instanceof Block) {
-                            handleLetterBlockCollision((Letter)obj1, (Block)obj2);
-                        } else if (obj1 instanceof Block && obj2 instanceof Letter) {
-                            handleLetterBlockCollision((Letter)obj2, (Block)obj1);
-                        }
+                // Islands end at static and kinematic bodies, which never wake
+                if (world.active[other] && world.sleeping[other] && !world.isPassive(other)
+                        && touching(world, current, other)) {
+                    world.bodies[other].wake();
+                    if (tail == world.wakeQueue.length) {
+                        world.wakeQueue = Arrays.copyOf(world.wakeQueue, tail * 2);
                     }
+                    world.wakeQueue[tail++] = other;
                 }
             }
         }
     }
     
     /**
-     * Resolves collision between two game objects.
+     * Wakes the island of every sleeping body touching the given one. Called when the
+     * body is removed or starts moving, which takes away what those bodies rest on.
+     * Every body is checked rather than the candidate pairs, which may be stale or leave
+     * out a body that was just deactivated.
+     */
+    static void wakeTouching(PhysicsWorld world, int i) {
+        for (int j = 0; j < world.size; j++) {
+            if (j != i && world.active[j] && world.sleeping[j] && !world.isPassive(j)
+                    && touching(world, i, j)) {
+                wakeIsland(world, j);
+            }
+        }
+    }
+    
+    /**
+     * Gets how fast a body has actually been moving, smoothed over the last few ticks.
+     */
+    private static double speed(PhysicsWorld world, int i) {
+        double vx = world.averageVelocityX[i];
+        double vy = world.averageVelocityY[i];
+        return Math.sqrt(vx * vx + vy * vy);
+    }
+    
+    /**
+     * Checks whether two bodies are touching or within ISLAND_CONTACT_MARGIN of each other.
      */
-    private static void resolveCollision(GameObject obj1, GameObject obj2) {
+    private static boolean touching(PhysicsWorld world, int i, int j) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        return x[i] <= x[j] + width[j] + ISLAND_CONTACT_MARGIN
+                && x[j] <= x[i] + width[i] + ISLAND_CONTACT_MARGIN
+                && y[i] <= y[j] + height[j] + ISLAND_CONTACT_MARGIN
+                && y[j] <= y[i] + height[i] + ISLAND_CONTACT_MARGIN;
+    }
+    
+    /**
+     * Loads the Vector API integration kernel, or returns null if it was not compiled,
+     * the jdk.incubator.vector module is missing, or wordflinger.simd is false.
+     */
+    private static IntegrationKernel loadVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("wordflinger.simd", "true"))) return null;
+        
+        try {
+            return (IntegrationKernel) Class.forName("game.VectorIntegrationKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Checks whether physics updates can use the Vector API integration kernel.
+     */
+    public static boolean isVectorKernelAvailable() {
+        return VECTOR_KERNEL != null;
+    }
+    
+    /**
+     * Creates a broadphase by name: "grid" for the spatial hash, "sap" for sweep-and-prune,
+     * "tree" for the dynamic AABB tree or "brute" for the full pair loop.
+     */
+    public static Broadphase createBroadphase(String name) {
+        switch (name) {
+            case "brute":
+                return new BruteForceBroadphase();
+            case "grid":
+                return new SpatialHashBroadphase();
+            case "sap":
+                return new SweepAndPruneBroadphase();
+            case "tree":
+                return new AabbTreeBroadphase();
+            default:
+                throw new IllegalArgumentException("Unknown broadphase: " + name);
+        }
+    }
+    
+    /**
+     * Checks whether the collision filters of two bodies let them collide: each body's
+     * category must be in the other's mask.
+     */
+    static boolean shouldCollide(PhysicsWorld world, int i, int j) {
+        return (world.category[i] & world.mask[j]) != 0 && (world.category[j] & world.mask[i]) != 0;
+    }
+    
+    /**
+     * Checks whether two bodies collide, using the narrowphase routine the world's
+     * dispatch table has for their types.
+     */
+    static boolean collides(PhysicsWorld world, int i, int j) {
+        return world.dispatch.collides(world, i, j);
+    }
+    
+    /**
+     * Checks whether two circles collide, at 90% of their combined radii.
+     */
+    static boolean collidesCircles(PhysicsWorld world, int i, int j) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        double dx = (x[i] + width[i]/2) - (x[j] + width[j]/2);
+        double dy = (y[i] + height[i]/2) - (y[j] + height[j]/2);
+        double radii = (width[i]/2 + width[j]/2) * 0.9;
+        return dx * dx + dy * dy < radii * radii;
+    }
+    
+    /**
+     * Checks whether two boxes collide. Boxes barely touching each other don't collide,
+     * which stops them sticking together.
+     */
+    static boolean collidesBoxes(PhysicsWorld world, int i, int j) {
+        return insetBoundsOverlap(world, i, j, 0.5);
+    }
+    
+    /**
+     * Checks whether a circle collides with a box. Very shallow contacts are ignored to
+     * prevent jittering.
+     */
+    static boolean collidesCircleBox(PhysicsWorld world, int circle, int box) {
+        return circleBoxContact(world, circle, box) >= CIRCLE_BOX_MIN_DEPTH;
+    }
+    
+    /**
+     * Finds how deep a circle and a box overlap. The circle is the largest one inside its
+     * bounds shrunk by its inset. Returns zero or less if they don't overlap.
+     */
+    static double circleBoxContact(PhysicsWorld world, int circle, int box) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        double radius = Math.min(width[circle], height[circle]) / 2 - world.inset[circle];
+        double centerX = x[circle] + width[circle] / 2;
+        double centerY = y[circle] + height[circle] / 2;
+        double minX = x[box], maxX = x[box] + width[box];
+        double minY = y[box], maxY = y[box] + height[box];
+        
+        // Closest point of the box to the circle's center
+        double dx = Math.max(minX, Math.min(maxX, centerX)) - centerX;
+        double dy = Math.max(minY, Math.min(maxY, centerY)) - centerY;
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared > 0) {
+            return distanceSquared >= radius * radius ? 0 : radius - Math.sqrt(distanceSquared);
+        }
+        
+        // The center is inside the box, so the circle leaves through the nearest face
+        return radius + Math.min(Math.min(centerX - minX, maxX - centerX),
+                Math.min(centerY - minY, maxY - centerY));
+    }
+    
+    /**
+     * Checks whether the bounds of two bodies, shrunk by their insets, overlap, and their
+     * full bounds overlap by at least minOverlap on both axes. Only the world's arrays
+     * are read, so the check allocates nothing.
+     */
+    private static boolean insetBoundsOverlap(PhysicsWorld world, int i, int j, double minOverlap) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        
+        // Standard AABB collision detection, with bounds shrunk by their inset
+        double inset1 = world.inset[i];
+        double inset2 = world.inset[j];
+        if (x[i] + inset1 >= x[j] + width[j] - inset2 || x[j] + inset2 >= x[i] + width[i] - inset1
+                || y[i] + inset1 >= y[j] + height[j] - inset2 || y[j] + inset2 >= y[i] + height[i] - inset1) {
+            return false;
+        }
+        
+        // Check that the penetration depth of the full bounds is significant; a very small
+        // overlap is ignored to prevent jittering
+        double overlapX = (width[i] + width[j]) / 2 - Math.abs((x[i] + width[i]/2) - (x[j] + width[j]/2));
+        double overlapY = (height[i] + height[j]) / 2 - Math.abs((y[i] + height[i]/2) - (y[j] + height[j]/2));
+        return overlapX >= minOverlap && overlapY >= minOverlap;
+    }
+    
+    /**
+     * Gets the contact cache key of a pair of bodies.
+     */
+    static long contactKey(PhysicsWorld world, int i, int j) {
+        return ContactCache.key(world.id[i], world.id[j]);
+    }
+    
+    /**
+     * Resolves collision between two bodies, using the contact cache slot of the pair.
+     * Only the two bodies and the slot are written, so contacts sharing no body can be
+     * resolved at the same time. Returns how far the bodies were pushed apart or how much
+     * their speed along the normal changed, whichever is larger relative to the world's
+     * tolerance for it; below 1, the contact needs no more iterations.
+     */
+    static double resolveCollision(PhysicsWorld world, int i, int j, int slot) {
+        byte[] shape = world.shape;
+        if (shape[i] != shape[j]) {
+            return resolveCircleBox(world, i, j, slot);
+        }
+        
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        
         // Find actual overlap between objects
-        double overlapX = (obj1.getWidth() + obj2.getWidth()) / 2 - Math.abs((obj1.getX() + obj1.getWidth()/2) - (obj2.getX() + obj2.getWidth()/2));
-        double overlapY = (obj1.getHeight() + obj2.getHeight()) / 2 - Math.abs((obj1.getY() + obj1.getHeight()/2) - (obj2.getY() + obj2.getHeight()/2));
+        double overlapX = (width[i] + width[j]) / 2 - Math.abs((x[i] + width[i]/2) - (x[j] + width[j]/2));
+        double overlapY = (height[i] + height[j]) / 2 - Math.abs((y[i] + height[i]/2) - (y[j] + height[j]/2));
         
         // Calculate centers of objects
-        double center1X = obj1.getX() + obj1.getWidth()/2;
-        double center1Y = obj1.getY() + obj1.getHeight()/2;
-        double center2X = obj2.getX() + obj2.getWidth()/2;
-        double center2Y = obj2.getY() + obj2.getHeight()/2;
+        double center1X = x[i] + width[i]/2;
+        double center1Y = y[i] + height[i]/2;
+        double center2X = x[j] + width[j]/2;
+        double center2Y = y[j] + height[j]/2;
         
         // Calculate collision normal
         double nx = center2X - center1X;
         double ny = center2Y - center1Y;
         double len = Math.sqrt(nx * nx + ny * ny);
         
-        // If objects are exactly on top of each other, use a random normal
+        // If objects are exactly on top of each other, use a random normal drawn from
+        // the world's seed
         if (len < 0.0001) {
-            double angle = Math.random() * Math.PI * 2;
-            nx = Math.cos(angle);
-            ny = Math.sin(angle);
+            double angle = world.contactRandom(contactKey(world, i, j)) * Math.PI * 2;
+            nx = StrictMath.cos(angle);
+            ny = StrictMath.sin(angle);
         } else {
             // Normalize normal vector
             nx /= len;
@@ -98,137 +706,273 @@ public class PhysicsEngine {
         
         // If MTD is zero, use normal based MTD
         if (Math.abs(mtdX) < 0.01 && Math.abs(mtdY) < 0.01) {
-            mtdX = nx * Math.min(obj1.getWidth(), obj2.getWidth()) * 0.5;
-            mtdY = ny * Math.min(obj1.getHeight(), obj2.getHeight()) * 0.5;
+            mtdX = nx * Math.min(width[i], width[j]) * 0.5;
+            mtdY = ny * Math.min(height[i], height[j]) * 0.5;
+        }
+        
+        // Impulses act along the separation axis
+        double mtdLength = Math.sqrt(mtdX * mtdX + mtdY * mtdY);
+        return resolveContact(world, i, j, slot, mtdX / mtdLength, mtdY / mtdLength, mtdLength);
+    }
+    
+    /**
+     * Resolves a contact between a circle and a box, whichever of the two bodies each
+     * one is. The normal and depth come from the same closest-point test as
+     * circleBoxContact, and are kept in locals so nothing is allocated.
+     */
+    private static double resolveCircleBox(PhysicsWorld world, int i, int j, int slot) {
+        boolean circleFirst = world.shape[i] == PhysicsWorld.SHAPE_CIRCLE;
+        int circle = circleFirst ? i : j;
+        int box = circleFirst ? j : i;
+        
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        double radius = Math.min(width[circle], height[circle]) / 2 - world.inset[circle];
+        double centerX = x[circle] + width[circle] / 2;
+        double centerY = y[circle] + height[circle] / 2;
+        double minX = x[box], maxX = x[box] + width[box];
+        double minY = y[box], maxY = y[box] + height[box];
+        
+        // Closest point of the box to the circle's center; the normal points from the
+        // circle into the box
+        double dx = Math.max(minX, Math.min(maxX, centerX)) - centerX;
+        double dy = Math.max(minY, Math.min(maxY, centerY)) - centerY;
+        double distanceSquared = dx * dx + dy * dy;
+        double nx, ny, depth;
+        if (distanceSquared > 0) {
+            if (distanceSquared >= radius * radius) return 0;
+            double distance = Math.sqrt(distanceSquared);
+            nx = dx / distance;
+            ny = dy / distance;
+            depth = radius - distance;
+        } else {
+            // The center is inside the box, so the circle leaves through the nearest face
+            double left = centerX - minX, right = maxX - centerX;
+            double top = centerY - minY, bottom = maxY - centerY;
+            double nearest = Math.min(Math.min(left, right), Math.min(top, bottom));
+            nx = nearest == left ? 1 : nearest == right ? -1 : 0;
+            ny = nx != 0 ? 0 : nearest == top ? 1 : -1;
+            depth = radius + nearest;
         }
+        if (depth <= 0) return 0;
         
-        // Calculate relative velocity
-        double velX1 = obj1.getVelocityX();
-        double velY1 = obj1.getVelocityY();
-        double velX2 = obj2.getVelocityX();
-        double velY2 = obj2.getVelocityY();
-        double relVelX = velX1 - velX2;
-        double relVelY = velY1 - velY2;
+        // The normal has to point from i to j
+        if (!circleFirst) {
+            nx = -nx;
+            ny = -ny;
+        }
+        return resolveContact(world, i, j, slot, nx, ny, depth * 1.01); // Add 1% extra space
+    }
+    
+    /**
+     * Applies the impulse and position correction for a contact whose unit normal points
+     * from the first body to the second, separating the bodies by the given distance.
+     * Returns the contact's correction relative to the solver tolerances.
+     */
+    private static double resolveContact(PhysicsWorld world, int i, int j, int slot,
+                                         double nx, double ny, double separation) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        double[] velocityX = world.velocityX, velocityY = world.velocityY;
+        double mtdX = nx * separation;
+        double mtdY = ny * separation;
         
-        // Calculate relative velocity in terms of normal direction
-        double relVelDotNormal = relVelX * nx + relVelY * ny;
+        // Sleeping bodies stay put, as if their mass were infinite
+        double inverseMass1 = inverseMass(world, i);
+        double inverseMass2 = inverseMass(world, j);
+        double totalInverseMass = inverseMass1 + inverseMass2;
+        if (totalInverseMass == 0) return 0;
         
-        // Do not resolve if objects are moving away from each other
-        if (relVelDotNormal > 0) return;
+        // Calculate relative velocity of the second body along the normal;
+        // negative means the bodies are closing
+        double relVelX = velocityX[j] - velocityX[i];
+        double relVelY = velocityY[j] - velocityY[i];
+        double relVelDotNormal = relVelX * nx + relVelY * ny;
         
-        // Calculate impulse scalar
-        double e = RESTITUTION;  // coefficient of restitution
-        double j = -(1 + e) * relVelDotNormal;
-        j /= (1 / obj1.getMass() + 1 / obj2.getMass());
+        // The first time a persisting contact is met in a tick, start from the impulse
+        // it ended the last tick with instead of from zero
+        ContactCache contacts = world.contacts;
+        double accumulated;
+        if (!contacts.isTouched(slot, world.tick)) {
+            accumulated = contacts.getImpulse(slot) * WARM_START_FACTOR;
+            contacts.touch(slot, world.tick);
+            applyImpulse(world, i, j, accumulated * nx, accumulated * ny);
+            relVelDotNormal += accumulated * totalInverseMass;
+        } else {
+            accumulated = contacts.getImpulse(slot);
+        }
         
-        // Apply impulse
-        double impulseX = j * nx;
-        double impulseY = j * ny;
+        // Only hard hits bounce
+        double e = relVelDotNormal < -RESTITUTION_THRESHOLD ? RESTITUTION : 0;
+        double impulse = -(1 + e) * relVelDotNormal / totalInverseMass;
         
-        obj1.setVelocityX(velX1 + impulseX / obj1.getMass());
-        obj1.setVelocityY(velY1 + impulseY / obj1.getMass());
-        obj2.setVelocityX(velX2 - impulseX / obj2.getMass());
-        obj2.setVelocityY(velY2 - impulseY / obj2.getMass());
+        // The contact may pull back some of the impulse it pushed with earlier,
+        // but its total impulse never pulls the bodies together
+        double newAccumulated = Math.max(0, accumulated + impulse);
+        contacts.setImpulse(slot, newAccumulated);
+        applyImpulse(world, i, j, (newAccumulated - accumulated) * nx, (newAccumulated - accumulated) * ny);
         
         // Apply mass-weighted position corrections to prevent overlap
-        double totalMass = obj1.getMass() + obj2.getMass();
-        double obj1Ratio = obj2.getMass() / totalMass;
-        double obj2Ratio = obj1.getMass() / totalMass;
+        double obj1Ratio = inverseMass1 / totalInverseMass;
+        double obj2Ratio = inverseMass2 / totalInverseMass;
         
         // Separate objects based on their mass
-        double newX1 = obj1.getX() - mtdX * obj1Ratio;
-        double newY1 = obj1.getY() - mtdY * obj1Ratio;
-        double newX2 = obj2.getX() + mtdX * obj2Ratio;
-        double newY2 = obj2.getY() + mtdY * obj2Ratio;
+        double newX1 = x[i] - mtdX * obj1Ratio;
+        double newY1 = y[i] - mtdY * obj1Ratio;
+        double newX2 = x[j] + mtdX * obj2Ratio;
+        double newY2 = y[j] + mtdY * obj2Ratio;
+        
+        // Set new positions while keeping objects on screen; bodies with infinite mass
+        // stay where they are, even outside the world bounds
+        if (inverseMass1 > 0) {
+            x[i] = Math.max(0, Math.min(WORLD_WIDTH - width[i], newX1));
+            y[i] = Math.max(0, Math.min(WORLD_HEIGHT - height[i], newY1));
+            world.movedInPass[i] = world.solverPass;
+        }
+        if (inverseMass2 > 0) {
+            x[j] = Math.max(0, Math.min(WORLD_WIDTH - width[j], newX2));
+            y[j] = Math.max(0, Math.min(WORLD_HEIGHT - height[j], newY2));
+            world.movedInPass[j] = world.solverPass;
+        }
         
-        // Set new positions while keeping objects on screen
-        obj1.x = Math.max(0, Math.min(1000 - obj1.getWidth(), newX1));
-        obj1.y = Math.max(0, Math.min(500 - obj1.getHeight(), newY1));
-        obj2.x = Math.max(0, Math.min(1000 - obj2.getWidth(), newX2));
-        obj2.y = Math.max(0, Math.min(500 - obj2.getHeight(), newY2));
+        double velocityChange = Math.abs(newAccumulated - accumulated) * totalInverseMass;
+        return Math.max(separation / world.positionTolerance, velocityChange / world.velocityTolerance);
+    }
+    
+    /**
+     * Applies an impulse pushing the second body away from the first, and the first
+     * away from the second.
+     */
+    private static void applyImpulse(PhysicsWorld world, int i, int j, double impulseX, double impulseY) {
+        // Bodies with infinite mass are not written, so contacts sharing one can be
+        // resolved at the same time
+        double inverseMass1 = inverseMass(world, i);
+        double inverseMass2 = inverseMass(world, j);
+        if (inverseMass1 > 0) {
+            world.velocityX[i] -= impulseX * inverseMass1;
+            world.velocityY[i] -= impulseY * inverseMass1;
+        }
+        if (inverseMass2 > 0) {
+            world.velocityX[j] += impulseX * inverseMass2;
+            world.velocityY[j] += impulseY * inverseMass2;
+        }
+    }
+    
+    /**
+     * Checks whether a contact has moved a body during the current solver pass.
+     */
+    private static boolean movedThisPass(PhysicsWorld world, int i) {
+        return world.movedInPass[i] == world.solverPass;
+    }
+    
+    /**
+     * Gets a body's inverse mass, which is zero while it sleeps.
+     */
+    static double inverseMass(PhysicsWorld world, int i) {
+        return world.sleeping[i] ? 0 : 1 / world.mass[i];
     }
     
     /**
-     * Checks and resolves collisions with walls.
+     * Checks every awake body against the walls. This runs once per step, before the
+     * solver: contacts never push a body past the walls, so how many passes the solver
+     * takes doesn't change how often a body bounces off them or slides on the floor.
      */
-    private static void checkWallCollisions(GameObject obj) {
-        double newX = obj.getX();
-        double newY = obj.getY();
+    private static void checkWallCollisions(PhysicsWorld world, double deltaTime) {
+        // Friction is scaled to the step length like drag, so it doesn't depend on the
+        // step rate
+        double friction = StrictMath.pow(FLOOR_FRICTION, deltaTime / DRAG_STEP);
+        for (int i = 0; i < world.size; i++) {
+            if (world.active[i] && !world.sleeping[i]) {
+                checkWallCollisions(world, i, friction);
+            }
+        }
+    }
+    
+    /**
+     * Checks and resolves collisions with walls, keeping the given fraction of the
+     * body's sliding velocity if it is on the floor.
+     */
+    private static void checkWallCollisions(PhysicsWorld world, int i, double friction) {
+        double[] velocityX = world.velocityX, velocityY = world.velocityY;
+        double newX = world.x[i];
+        double newY = world.y[i];
         boolean collided = false;
         
         // Left wall
         if (newX < 0) {
             newX = 0;
-            obj.setVelocityX(-obj.getVelocityX() * RESTITUTION);
+            velocityX[i] = -velocityX[i] * RESTITUTION;
             collided = true;
         }
         
         // Right wall
-        if (newX + obj.getWidth() > 1000) {
-            newX = 1000 - obj.getWidth();
-            obj.setVelocityX(-obj.getVelocityX() * RESTITUTION);
+        if (newX + world.width[i] > WORLD_WIDTH) {
+            newX = WORLD_WIDTH - world.width[i];
+            velocityX[i] = -velocityX[i] * RESTITUTION;
             collided = true;
         }
         
         // Top wall (ceiling)
         if (newY < 0) {
             newY = 0;
-            obj.setVelocityY(-obj.getVelocityY() * RESTITUTION);
+            velocityY[i] = -velocityY[i] * RESTITUTION;
             collided = true;
         }
         
         // Bottom wall (floor)
-        if (newY + obj.getHeight() > 500) {
-            newY = 500 - obj.getHeight();
+        if (newY + world.height[i] > WORLD_HEIGHT) {
+            newY = WORLD_HEIGHT - world.height[i];
             
-            // Only bounce if coming in fast enough
-            if (Math.abs(obj.getVelocityY()) > 1.0) {
-                obj.setVelocityY(-obj.getVelocityY() * RESTITUTION);
+            // Only bounce if coming in fast enough, by the same threshold as contacts. A
+            // body resting on the floor gains GRAVITY * deltaTime each step, so a fixed
+            // threshold below that would bounce it at some step rates and not others
+            if (Math.abs(velocityY[i]) > RESTITUTION_THRESHOLD) {
+                velocityY[i] = -velocityY[i] * RESTITUTION;
             } else {
-                obj.setVelocityY(0);
+                velocityY[i] = 0;
             }
             
             // Apply friction on the floor
-            obj.setVelocityX(obj.getVelocityX() * 0.9);
+            velocityX[i] = velocityX[i] * friction;
             collided = true;
         }
         
         if (collided) {
             // Update position after collision
-            obj.x = newX;
-            obj.y = newY;
+            world.x[i] = newX;
+            world.y[i] = newY;
         }
     }
     
     /**
-     * Handles special case for letters hitting blocks.
+     * Damages a block hit by a letter, based on the letter's momentum.
      */
-    private static void handleLetterBlockCollision(Letter letter, Block block) {
+    static void letterHitsBlock(PhysicsWorld world, int letter, int block) {
         // Calculate collision force based on letter's velocity
         double velocityMagnitude = Math.sqrt(
-            letter.getVelocityX() * letter.getVelocityX() + 
-            letter.getVelocityY() * letter.getVelocityY()
+            world.velocityX[letter] * world.velocityX[letter] +
+            world.velocityY[letter] * world.velocityY[letter]
         );
         
         // Apply damage to the block based on collision force
-        block.onHit(velocityMagnitude * letter.getMass() / 20.0);
+        ((Block) world.bodies[block]).onHit(velocityMagnitude * world.mass[letter] / 20.0);
     }
     
     /**
      * Calculates the launch velocity for flinging a letter.
      */
-    public static Vector2D calculateLaunchVelocity(double startX, double startY, 
-                                                 double targetX, double targetY, 
+    public static Vector2D calculateLaunchVelocity(double startX, double startY,
+                                                 double targetX, double targetY,
                                                  double power) {
-        // Calculate direction vector
-        double dx = targetX - startX;
-        double dy = targetY - startY;
-        
-        // Normalize and scale by power
-        double length = Math.sqrt(dx * dx + dy * dy);
-        double normalizedX = dx / length;
-        double normalizedY = dy / length;
-        
-        return new Vector2D(normalizedX * power, normalizedY * power);
+        return calculateLaunchVelocity(startX, startY, targetX, targetY, power, new Vector2D(0, 0));
+    }
+    
+    /**
+     * Calculates the launch velocity for flinging a letter into out, and returns it.
+     * A zero-length drag gives zero velocity.
+     */
+    public static Vector2D calculateLaunchVelocity(double startX, double startY,
+                                                 double targetX, double targetY,
+                                                 double power, Vector2D out) {
+        // Direction vector, normalized and scaled by power
+        return out.set(targetX - startX, targetY - startY).normalizeLocal().multiplyLocal(power);
     }
 }
@@ -0,0 +1,462 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Stores the physics state of every body in contiguous primitive arrays. Game objects
+ * are thin handles into these arrays, so the physics loops walk flat data instead of
+ * chasing references through a list.
+ */
+public class PhysicsWorld {
+    private static final int INITIAL_CAPACITY = 64;
+    
+    // Collision shapes
+    public static final byte SHAPE_BOX = 0;
+    public static final byte SHAPE_CIRCLE = 1;
+    
+    // Motion types. Static bodies never move, and kinematic bodies move only by the
+    // velocity they are given. Both have infinite mass and count as asleep, so they are
+    // never integrated or pushed, and are only woken by becoming dynamic again
+    public static final byte MOTION_DYNAMIC = 0;
+    public static final byte MOTION_STATIC = 1;
+    public static final byte MOTION_KINEMATIC = 2;
+    
+    // Body state, indexed by handle
+    double[] x, y;
+    double[] width, height;
+    double[] velocityX, velocityY;
+    double[] mass;
+    double[] maxSpeed;
+    boolean[] active;
+    
+    // Collision shape, indexed by handle. Circles collide with boxes as the largest
+    // circle inside their bounds shrunk by the inset on every side
+    byte[] shape;
+    double[] inset;
+    
+    // Collision filtering and dispatch, indexed by handle. Two bodies collide only if each
+    // one's category is in the other's mask; the type picks the dispatch table entry
+    int[] category, mask;
+    byte[] type;
+    
+    // Motion type, indexed by handle
+    byte[] motion;
+    
+    // Sleep state, indexed by handle
+    boolean[] sleeping;
+    int[] sleepTicks;
+    double[] averageVelocityX, averageVelocityY;
+    double[] previousX, previousY;
+    
+    // Solver pass in which a contact last moved each body, indexed by handle
+    int[] movedInPass;
+    
+    // Unique id of the body in each handle; unlike handles, ids are never reused
+    int[] id;
+    private int nextId = 0;
+    
+    // Object owning each handle, or null for a free slot
+    GameObject[] bodies;
+    
+    // Handles in use are below size; freed handles are reused before size grows
+    int size = 0;
+    private int[] freeHandles = new int[16];
+    private int freeCount = 0;
+    
+    // Per-world engine state
+    Broadphase broadphase;
+    final PairBuffer pairs = new PairBuffer();
+    boolean[] pairOverlaps = new boolean[256];
+    int parallelThreshold = Integer.getInteger("wordflinger.parallelThreshold",
+            PhysicsEngine.DEFAULT_PARALLEL_THRESHOLD);
+    ColoredSolver coloredSolver = "colored".equals(System.getProperty("wordflinger.solver"))
+            ? new ColoredSolver() : null;
+    int[] wakeQueue = new int[256];
+    final ContactCache contacts = new ContactCache();
+    int solverIterations = PhysicsEngine.DEFAULT_SOLVER_ITERATIONS;
+    double positionTolerance = PhysicsEngine.DEFAULT_POSITION_TOLERANCE;
+    double velocityTolerance = PhysicsEngine.DEFAULT_VELOCITY_TOLERANCE;
+    int lastSolverIterations;
+    long totalSolverIterations;
+    int tick = 0;
+    int solverPass = 0;
+    CollisionDispatch dispatch = CollisionDispatch.createDefault();
+    long lastUpdateNanos;
+    
+    // All randomness in a world comes from its seed: game code draws from the random
+    // generator, and the solver hashes the seed with a contact and tick, so its draws
+    // don't depend on the order contacts are solved in
+    private long seed;
+    private Random random;
+    
+    /**
+     * Constructs an empty world using the broadphase named by the
+     * wordflinger.broadphase system property.
+     */
+    public PhysicsWorld() {
+        this(PhysicsEngine.createBroadphase(System.getProperty("wordflinger.broadphase", "grid")));
+    }
+    
+    /**
+     * Constructs an empty world using the given broadphase.
+     */
+    public PhysicsWorld(Broadphase broadphase) {
+        this.broadphase = broadphase;
+        allocate(INITIAL_CAPACITY);
+        setSeed(Long.getLong("wordflinger.seed", new Random().nextLong()));
+    }
+    
+    /**
+     * Adds a body and returns its handle.
+     */
+    int createBody(GameObject obj, double bodyX, double bodyY, double bodyWidth, double bodyHeight, double bodyMass) {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (size == x.length) {
+                grow(size * 2);
+            }
+            handle = size++;
+        }
+        
+        bodies[handle] = obj;
+        id[handle] = nextId++;
+        x[handle] = bodyX;
+        y[handle] = bodyY;
+        width[handle] = bodyWidth;
+        height[handle] = bodyHeight;
+        velocityX[handle] = 0;
+        velocityY[handle] = 0;
+        mass[handle] = bodyMass;
+        maxSpeed[handle] = Double.POSITIVE_INFINITY;
+        active[handle] = true;
+        shape[handle] = SHAPE_BOX;
+        inset[handle] = 0;
+        category[handle] = GameObject.CATEGORY_DEFAULT;
+        mask[handle] = GameObject.MASK_ALL;
+        type[handle] = CollisionDispatch.TYPE_BODY;
+        motion[handle] = MOTION_DYNAMIC;
+        sleeping[handle] = false;
+        sleepTicks[handle] = 0;
+        averageVelocityX[handle] = 0;
+        averageVelocityY[handle] = 0;
+        previousX[handle] = bodyX;
+        previousY[handle] = bodyY;
+        return handle;
+    }
+    
+    /**
+     * Removes an object's body, waking whatever sleeps against it. The object must not
+     * be used afterwards.
+     */
+    public void removeBody(GameObject obj) {
+        int handle = obj.handle;
+        if (handle < 0 || bodies[handle] != obj) return;
+        
+        PhysicsEngine.wakeTouching(this, handle);
+        bodies[handle] = null;
+        active[handle] = false;
+        obj.handle = -1;
+        
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+    
+    /**
+     * Removes every body, keeping the allocated storage.
+     */
+    public void clear() {
+        for (int handle = 0; handle < size; handle++) {
+            if (bodies[handle] != null) {
+                bodies[handle].handle = -1;
+                bodies[handle] = null;
+            }
+            active[handle] = false;
+        }
+        size = 0;
+        freeCount = 0;
+        contacts.clear();
+    }
+    
+    /**
+     * Checks whether a body is static or kinematic, and so is never moved by contacts.
+     */
+    boolean isPassive(int handle) {
+        return motion[handle] != MOTION_DYNAMIC;
+    }
+    
+    /**
+     * Gets the object owning a handle, or null if the handle is free.
+     */
+    public GameObject getBody(int handle) {
+        return bodies[handle];
+    }
+    
+    /**
+     * Gets the number of handles in use, including freed ones awaiting reuse.
+     * Valid handles are in the range [0, getHandleCount()).
+     */
+    public int getHandleCount() {
+        return size;
+    }
+    
+    /**
+     * Gets the number of bodies in the world.
+     */
+    public int getBodyCount() {
+        return size - freeCount;
+    }
+    
+    /**
+     * Sets the body count at and above which the narrowphase runs in parallel.
+     */
+    public void setParallelThreshold(int bodyCount) {
+        parallelThreshold = bodyCount;
+    }
+    
+    /**
+     * Gets the body count at and above which the narrowphase runs in parallel.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    /**
+     * Sets whether contacts are solved in parallel batches colored so that no two
+     * contacts in a batch share a body, instead of one by one in handle order.
+     */
+    public void setColoredSolver(boolean enabled) {
+        if (enabled && coloredSolver == null) {
+            coloredSolver = new ColoredSolver();
+        } else if (!enabled) {
+            coloredSolver = null;
+        }
+    }
+    
+    /**
+     * Checks whether contacts are solved in parallel color batches.
+     */
+    public boolean isColoredSolver() {
+        return coloredSolver != null;
+    }
+    
+    /**
+     * Gets the table picking the narrowphase routine and contact callback for each pair
+     * of body types.
+     */
+    public CollisionDispatch getDispatch() {
+        return dispatch;
+    }
+    
+    /**
+     * Sets the table picking the narrowphase routine and contact callback for each pair
+     * of body types.
+     */
+    public void setDispatch(CollisionDispatch dispatch) {
+        this.dispatch = dispatch;
+    }
+    
+    /**
+     * Sets the broadphase used to find candidate collision pairs.
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        this.broadphase = broadphase;
+    }
+    
+    /**
+     * Gets the broadphase used to find candidate collision pairs.
+     */
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+    
+    /**
+     * Sets the most times per tick the solver iterates over the contacts. It stops
+     * sooner once the contacts are within the solver tolerances.
+     */
+    public void setSolverIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Solver iterations must be at least 1: " + iterations);
+        }
+        solverIterations = iterations;
+    }
+    
+    /**
+     * Gets the most times per tick the solver iterates over the contacts.
+     */
+    public int getSolverIterations() {
+        return solverIterations;
+    }
+    
+    /**
+     * Sets how far apart, in pixels, and how much faster along the normal, in pixels per
+     * second, a contact may still be pushed in a pass before the solver stops iterating.
+     * With zero tolerances, the solver only stops early after a pass resolves nothing.
+     */
+    public void setSolverTolerance(double position, double velocity) {
+        if (!(position >= 0) || !(velocity >= 0)) {
+            throw new IllegalArgumentException("Solver tolerances must not be negative: " + position + ", " + velocity);
+        }
+        positionTolerance = position;
+        velocityTolerance = velocity;
+    }
+    
+    /**
+     * Gets how far apart, in pixels, a contact may still be pushed in the last pass.
+     */
+    public double getPositionTolerance() {
+        return positionTolerance;
+    }
+    
+    /**
+     * Gets how much a contact's speed along its normal may still change in the last pass.
+     */
+    public double getVelocityTolerance() {
+        return velocityTolerance;
+    }
+    
+    /**
+     * Gets how many times the solver iterated over the contacts in the last tick.
+     */
+    public int getLastSolverIterations() {
+        return lastSolverIterations;
+    }
+    
+    /**
+     * Gets how many times the solver has iterated over the contacts in all ticks so far.
+     */
+    public long getTotalSolverIterations() {
+        return totalSolverIterations;
+    }
+    
+    /**
+     * Gets the number of ticks simulated so far.
+     */
+    public int getTick() {
+        return tick;
+    }
+    
+    /**
+     * Gets the number of contacts carried over between ticks for warm starting.
+     */
+    public int getCachedContactCount() {
+        return contacts.size();
+    }
+    
+    /**
+     * Seeds the world's randomness. Two worlds with the same seed, bodies and inputs
+     * reach bit-identical states on every run.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random = new Random(seed);
+    }
+    
+    /**
+     * Gets the seed the world's randomness started from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Gets the random generator game code should draw from, so that a seeded world
+     * replays the same way.
+     */
+    public Random getRandom() {
+        return random;
+    }
+    
+    /**
+     * Gets a random number in [0, 1) for a contact during the current tick. The same
+     * seed, contact and tick always give the same number, whichever thread asks.
+     */
+    double contactRandom(long key) {
+        long bits = seed ^ (key * 0x9e3779b97f4a7c15L) ^ ((long) tick << 32);
+        bits = (bits ^ (bits >>> 33)) * 0xff51afd7ed558ccdL;
+        bits = (bits ^ (bits >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        bits ^= bits >>> 33;
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+    
+    /**
+     * Computes a hash of every body's position, velocity and state, for checking that
+     * two runs reached the same state.
+     */
+    public long stateHash() {
+        long hash = size;
+        for (int i = 0; i < size; i++) {
+            hash = hash * 31 + Double.doubleToLongBits(x[i]);
+            hash = hash * 31 + Double.doubleToLongBits(y[i]);
+            hash = hash * 31 + Double.doubleToLongBits(velocityX[i]);
+            hash = hash * 31 + Double.doubleToLongBits(velocityY[i]);
+            hash = hash * 31 + (active[i] ? 1 : 0) + (sleeping[i] ? 2 : 0);
+        }
+        return hash;
+    }
+    
+    /**
+     * Gets how long the last physics update took, in nanoseconds.
+     */
+    public long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+    
+    private void allocate(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        width = new double[capacity];
+        height = new double[capacity];
+        velocityX = new double[capacity];
+        velocityY = new double[capacity];
+        mass = new double[capacity];
+        maxSpeed = new double[capacity];
+        active = new boolean[capacity];
+        shape = new byte[capacity];
+        inset = new double[capacity];
+        category = new int[capacity];
+        mask = new int[capacity];
+        type = new byte[capacity];
+        motion = new byte[capacity];
+        sleeping = new boolean[capacity];
+        sleepTicks = new int[capacity];
+        averageVelocityX = new double[capacity];
+        averageVelocityY = new double[capacity];
+        previousX = new double[capacity];
+        previousY = new double[capacity];
+        movedInPass = new int[capacity];
+        id = new int[capacity];
+        bodies = new GameObject[capacity];
+    }
+    
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+        active = Arrays.copyOf(active, capacity);
+        shape = Arrays.copyOf(shape, capacity);
+        inset = Arrays.copyOf(inset, capacity);
+        category = Arrays.copyOf(category, capacity);
+        mask = Arrays.copyOf(mask, capacity);
+        type = Arrays.copyOf(type, capacity);
+        motion = Arrays.copyOf(motion, capacity);
+        sleeping = Arrays.copyOf(sleeping, capacity);
+        sleepTicks = Arrays.copyOf(sleepTicks, capacity);
+        averageVelocityX = Arrays.copyOf(averageVelocityX, capacity);
+        averageVelocityY = Arrays.copyOf(averageVelocityY, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        movedInPass = Arrays.copyOf(movedInPass, capacity);
+        id = Arrays.copyOf(id, capacity);
+        bodies = Arrays.copyOf(bodies, capacity);
+    }
+}
@@ -0,0 +1,111 @@
+package game;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What the screen needs of the game at one moment: where every active object was over
+ * the last physics step, its size and color, and what it shows, such as a block's
+ * health, along with the score and level. A simulation thread fills snapshots and hands
+ * them to the painter, which draws them while the simulation moves on. A snapshot isn't
+ * changed once it has been handed over until the painter has let go of it.
+ */
+class RenderSnapshot {
+    private int count;
+    private GameObject[] objects = new GameObject[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] previousX = new double[0];
+    private double[] previousY = new double[0];
+    private int[] width = new int[0];
+    private int[] height = new int[0];
+    private int[] rgb = new int[0];
+    private int[] state = new int[0];
+    
+    private int score;
+    private int level;
+    
+    // When the captured state was current, and how long a physics step lasts
+    private long stateTime;
+    private long stepNanos = 1;
+    
+    /**
+     * Fills the snapshot from the simulation's current state, which was current at the
+     * given System.nanoTime. Only the simulation's thread may call this.
+     */
+    void capture(Simulation simulation, long stateTime) {
+        List<GameObject> gameObjects = simulation.getGameObjects();
+        if (objects.length < gameObjects.size()) {
+            grow(Math.max(gameObjects.size(), objects.length * 2));
+        }
+        
+        PhysicsWorld world = simulation.getWorld();
+        int n = 0;
+        for (GameObject obj : gameObjects) {
+            int h = obj.getHandle();
+            if (h < 0 || !world.active[h]) continue;
+            objects[n] = obj;
+            x[n] = world.x[h];
+            y[n] = world.y[h];
+            previousX[n] = world.previousX[h];
+            previousY[n] = world.previousY[h];
+            width[n] = (int) world.width[h];
+            height[n] = (int) world.height[h];
+            rgb[n] = obj.rgb;
+            state[n] = obj.renderState();
+            n++;
+        }
+        
+        // Let go of objects that were removed since the last capture
+        Arrays.fill(objects, n, count > n ? count : n, null);
+        count = n;
+        
+        score = simulation.getScore();
+        level = simulation.getCurrentLevel();
+        this.stateTime = stateTime;
+        stepNanos = Math.max(1, Math.round(simulation.getStepSeconds() * 1e9));
+    }
+    
+    /**
+     * Draws every object, blended between its last two physics states by how far the
+     * given System.nanoTime is into the step after the captured one.
+     */
+    void render(Graphics2D g, long now) {
+        double alpha = Math.min(1, Math.max(0, (double) (now - stateTime) / stepNanos));
+        for (int i = 0; i < count; i++) {
+            double renderX = previousX[i] + (x[i] - previousX[i]) * alpha;
+            double renderY = previousY[i] + (y[i] - previousY[i]) * alpha;
+            objects[i].draw(g, (int) renderX, (int) renderY, width[i], height[i], rgb[i], state[i]);
+        }
+    }
+    
+    /**
+     * Gets the score at the moment captured.
+     */
+    int getScore() {
+        return score;
+    }
+    
+    /**
+     * Gets the level at the moment captured.
+     */
+    int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Makes room for the given number of objects.
+     */
+    private void grow(int capacity) {
+        objects = Arrays.copyOf(objects, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        rgb = Arrays.copyOf(rgb, capacity);
+        state = Arrays.copyOf(state, capacity);
+    }
+}
@@ -0,0 +1,160 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+
+/**
+ * The parts of the game screen that never move, drawn once into images that are then
+ * copied to the screen every frame. The background, with the sky and the floor, covers
+ * the screen behind the game objects. The slingshot and the instructions go in front of
+ * them, so they are blended over the frame, each from an image only as big as the area
+ * it covers. The images are redrawn only when the screen is resized, when the level
+ * changes, or when the graphics system throws their contents away.
+ */
+class SceneryLayer {
+    // Scenery colors and fonts, shared by every redraw
+    private static final Color SKY_TOP = new Color(220, 240, 255);
+    private static final Color SKY_BOTTOM = new Color(180, 210, 240);
+    private static final Color FLOOR = new Color(100, 100, 100);
+    private static final Color WOOD = new Color(100, 70, 30);
+    private static final Color BAND = new Color(200, 30, 30);
+    private static final BasicStroke BAND_STROKE = new BasicStroke(3f);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font TEXT_FONT = new Font("Arial", Font.PLAIN, 12);
+    
+    // Screen areas of the front parts, with room for antialiasing and long level numbers
+    private static final Rectangle SLINGSHOT_AREA = new Rectangle(20, 365, 80, 140);
+    private static final Rectangle TEXT_AREA = new Rectangle(15, 10, 320, 70);
+    
+    // The parts of the scenery, each cached in its own image
+    private static final int BACKGROUND = 0;
+    private static final int SLINGSHOT = 1;
+    private static final int TEXT = 2;
+    
+    private final VolatileImage[] images = new VolatileImage[3];
+    private final boolean[] stale = {true, true, true};
+    private final Rectangle screenArea = new Rectangle();
+    
+    // What the images were last drawn for
+    private int width, height;
+    private int level = -1;
+    
+    /**
+     * Sets the screen size and level the scenery is drawn for, marking whichever
+     * images they change as needing a redraw.
+     */
+    void update(int width, int height, int level) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            screenArea.setSize(width, height);
+            Arrays.fill(stale, true);
+        }
+        if (level != this.level) {
+            this.level = level;
+            stale[TEXT] = true;
+        }
+    }
+    
+    /**
+     * Draws the background, which covers the whole screen.
+     */
+    void drawBackground(Graphics2D g, GraphicsConfiguration gc) {
+        draw(g, gc, BACKGROUND, screenArea);
+    }
+    
+    /**
+     * Draws the slingshot and the instructions on top of whatever is already on the
+     * screen.
+     */
+    void drawOverlay(Graphics2D g, GraphicsConfiguration gc) {
+        draw(g, gc, SLINGSHOT, SLINGSHOT_AREA);
+        draw(g, gc, TEXT, TEXT_AREA);
+    }
+    
+    /**
+     * Copies one part's image to its area of the screen, first recreating the image if
+     * it no longer fits the area and redrawing it if it is stale or its contents were
+     * lost.
+     */
+    private void draw(Graphics2D g, GraphicsConfiguration gc, int part, Rectangle area) {
+        if (width <= 0 || height <= 0) return;
+        
+        // Without a screen to match there is nothing to cache in, so draw directly
+        if (gc == null) {
+            paint(g, part);
+            return;
+        }
+        
+        VolatileImage image = images[part];
+        boolean front = part != BACKGROUND;
+        do {
+            int status = image == null || image.getWidth() != area.width || image.getHeight() != area.height
+                    ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (image != null) image.flush();
+                image = gc.createCompatibleVolatileImage(area.width, area.height,
+                        front ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+                images[part] = image;
+            }
+            
+            // A restored or new image has undefined contents
+            if (stale[part] || status != VolatileImage.IMAGE_OK) {
+                Graphics2D imageGraphics = image.createGraphics();
+                try {
+                    if (front) {
+                        imageGraphics.setComposite(AlphaComposite.Clear);
+                        imageGraphics.fillRect(0, 0, area.width, area.height);
+                        imageGraphics.setComposite(AlphaComposite.SrcOver);
+                    }
+                    
+                    // Paint in screen coordinates, shifted so the area lands on the image
+                    imageGraphics.translate(-area.x, -area.y);
+                    paint(imageGraphics, part);
+                } finally {
+                    imageGraphics.dispose();
+                }
+                stale[part] = false;
+            }
+            
+            g.drawImage(image, area.x, area.y, null);
+        } while (image.contentsLost());
+    }
+    
+    /**
+     * Paints one part of the scenery in screen coordinates.
+     */
+    private void paint(Graphics2D g, int part) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (part == BACKGROUND) {
+            // Draw background with gradient
+            g.setPaint(new GradientPaint(0, 0, SKY_TOP, 0, height, SKY_BOTTOM));
+            g.fillRect(0, 0, width, height);
+            
+            // Draw floor
+            g.setColor(FLOOR);
+            g.fillRect(0, 500, width, 20);
+        } else if (part == SLINGSHOT) {
+            // Draw slingshot area on left side
+            g.setColor(WOOD);
+            g.fillRect(30, 380, 10, 120);
+            g.fillRect(80, 380, 10, 120);
+            g.fillOval(25, 370, 20, 20);
+            g.fillOval(75, 370, 20, 20);
+            
+            // Draw elastic band
+            g.setColor(BAND);
+            g.setStroke(BAND_STROKE);
+            g.drawLine(35, 380, 85, 380);
+        } else {
+            // Draw level and instructions
+            g.setColor(Color.BLACK);
+            g.setFont(TITLE_FONT);
+            g.drawString("Level: " + level, 20, 30);
+            g.setFont(TEXT_FONT);
+            g.drawString("Enter a word and click 'Fling!' or drag to aim", 20, 50);
+            g.drawString("Goal: Knock down the blocks with letters", 20, 70);
+        }
+    }
+}
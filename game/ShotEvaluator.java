@@ -0,0 +1,300 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates many shots at one level headless, each in its own world, and reports how
+ * each one went. Shots are spread over the fork/join pool, whose workers steal from each
+ * other when some shots take longer to settle than others. Every shot starts from the
+ * same seed, so results are reproducible and can be compared with each other.
+ */
+public class ShotEvaluator {
+    // A shot that hasn't settled after this many steps is stopped
+    public static final int DEFAULT_MAX_TICKS = 20 * 60;
+    
+    // Shots per task below which a range of shots is simulated on the current thread
+    static final int SPLIT_THRESHOLD = 1;
+    
+    private final int level;
+    private final long seed;
+    private final double stepsPerSecond;
+    private int maxTicks = DEFAULT_MAX_TICKS;
+    
+    /**
+     * A word flung along a drag vector, or at the default angle if the vector is zero.
+     */
+    public static class Shot {
+        private final String word;
+        private final double dragX, dragY;
+        
+        /**
+         * Constructs a shot flinging the word along the drag vector.
+         */
+        public Shot(String word, double dragX, double dragY) {
+            this.word = word;
+            this.dragX = dragX;
+            this.dragY = dragY;
+        }
+        
+        /**
+         * Gets the flung word.
+         */
+        public String getWord() {
+            return word;
+        }
+        
+        /**
+         * Gets the x component of the drag vector.
+         */
+        public double getDragX() {
+            return dragX;
+        }
+        
+        /**
+         * Gets the y component of the drag vector.
+         */
+        public double getDragY() {
+            return dragY;
+        }
+        
+        /**
+         * Checks whether the shot is aimed along its drag vector.
+         */
+        public boolean isAimed() {
+            return dragX != 0 || dragY != 0;
+        }
+        
+        /**
+         * Formats the shot the way it is given on the command line.
+         */
+        @Override
+        public String toString() {
+            return isAimed() ? word + "@" + dragX + "," + dragY : word;
+        }
+    }
+    
+    /**
+     * The outcome of one shot.
+     */
+    public static class Result {
+        private final Shot shot;
+        private final int score;
+        private final int blocksDamaged;
+        private final int blockCount;
+        private final int ticksToSettle;
+        private final boolean settled;
+        
+        /**
+         * Constructs the outcome of a shot.
+         */
+        Result(Shot shot, int score, int blocksDamaged, int blockCount, int ticksToSettle, boolean settled) {
+            this.shot = shot;
+            this.score = score;
+            this.blocksDamaged = blocksDamaged;
+            this.blockCount = blockCount;
+            this.ticksToSettle = ticksToSettle;
+            this.settled = settled;
+        }
+        
+        /**
+         * Gets the shot this is the outcome of.
+         */
+        public Shot getShot() {
+            return shot;
+        }
+        
+        /**
+         * Gets the score the shot earned, which is nonzero if it completed the level.
+         */
+        public int getScore() {
+            return score;
+        }
+        
+        /**
+         * Gets the number of blocks that were hit or knocked out of the world.
+         */
+        public int getBlocksDamaged() {
+            return blocksDamaged;
+        }
+        
+        /**
+         * Gets the number of blocks in the level.
+         */
+        public int getBlockCount() {
+            return blockCount;
+        }
+        
+        /**
+         * Gets the number of steps simulated before everything came to rest, or before
+         * the shot was stopped if it never did.
+         */
+        public int getTicksToSettle() {
+            return ticksToSettle;
+        }
+        
+        /**
+         * Checks whether everything came to rest before the step limit.
+         */
+        public boolean isSettled() {
+            return settled;
+        }
+    }
+    
+    /**
+     * Constructs an evaluator for shots at a level, with every shot's world seeded with
+     * the given seed.
+     */
+    public ShotEvaluator(int level, long seed, double stepsPerSecond) {
+        this.level = level;
+        this.seed = seed;
+        this.stepsPerSecond = stepsPerSecond;
+    }
+    
+    /**
+     * Sets how many steps a shot is simulated for at most.
+     */
+    public void setMaxTicks(int maxTicks) {
+        if (maxTicks < 1) {
+            throw new IllegalArgumentException("Step limit must be at least 1: " + maxTicks);
+        }
+        this.maxTicks = maxTicks;
+    }
+    
+    /**
+     * Gets how many steps a shot is simulated for at most.
+     */
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+    
+    /**
+     * Simulates every shot in parallel and returns their outcomes in shot order.
+     */
+    public Result[] evaluateAll(List<Shot> shots) {
+        Result[] results = new Result[shots.size()];
+        ForkJoinPool.commonPool().invoke(new ShotTask(shots, results, 0, shots.size()));
+        return results;
+    }
+    
+    /**
+     * Simulates one shot on the current thread, from a freshly set up level until
+     * everything comes to rest.
+     */
+    public Result evaluate(Shot shot) {
+        PhysicsWorld world = new PhysicsWorld();
+        world.setSeed(seed);
+        
+        // Shots already keep every worker busy, so each world is simulated serially
+        world.setParallelThreshold(Integer.MAX_VALUE);
+        world.setColoredSolver(false);
+        
+        Simulation simulation = new Simulation(world, stepsPerSecond);
+        simulation.setAutoAdvance(false);
+        simulation.setupLevel(level);
+        int blockCount = simulation.getBlocks().size();
+        
+        if (shot.isAimed()) {
+            simulation.flingWord(shot.getWord(), 0, 0, shot.getDragX(), shot.getDragY());
+        } else {
+            simulation.flingWord(shot.getWord());
+        }
+        
+        int ticks = 0;
+        boolean settled = false;
+        while (ticks < maxTicks && !settled) {
+            simulation.step();
+            ticks++;
+            settled = simulation.isSettled();
+        }
+        
+        // Blocks that left the world were removed from the level
+        int blocksDamaged = blockCount - simulation.getBlocks().size();
+        for (Block block : simulation.getBlocks()) {
+            if (block.isHit()) blocksDamaged++;
+        }
+        return new Result(shot, simulation.getScore(), blocksDamaged, blockCount, ticks, settled);
+    }
+    
+    /**
+     * Simulates a range of shots, splitting it in half first if it holds more than one.
+     */
+    private class ShotTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Shot> shots;
+        private final Result[] results;
+        private final int from, to;
+        
+        /**
+         * Constructs a task simulating the shots in [from, to).
+         */
+        ShotTask(List<Shot> shots, Result[] results, int from, int to) {
+            this.shots = shots;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        /**
+         * Simulates the range, splitting it in half first if it is large.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int k = from; k < to; k++) {
+                    results[k] = evaluate(shots.get(k));
+                }
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new ShotTask(shots, results, from, mid), new ShotTask(shots, results, mid, to));
+        }
+    }
+    
+    /**
+     * Evaluates shots at a level and prints their outcomes. Shots are given as WORD for
+     * the default angle or WORD@dx,dy for a drag vector; without any, a fan of drag
+     * vectors is tried. Run with: java game.ShotEvaluator [level] [shot...]
+     */
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long seed = Long.getLong("wordflinger.seed", 1);
+        
+        List<Shot> shots = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] parts = args[i].split("@");
+            if (parts.length == 1) {
+                shots.add(new Shot(parts[0], 0, 0));
+            } else {
+                String[] drag = parts[1].split(",");
+                shots.add(new Shot(parts[0], Double.parseDouble(drag[0]), Double.parseDouble(drag[1])));
+            }
+        }
+        if (shots.isEmpty()) {
+            for (int angle = -60; angle <= 15; angle += 5) {
+                double radians = Math.toRadians(angle);
+                shots.add(new Shot("FLING", Math.round(100 * StrictMath.cos(radians)),
+                        Math.round(100 * StrictMath.sin(radians))));
+            }
+        }
+        
+        ShotEvaluator evaluator = new ShotEvaluator(level, seed,
+                Integer.getInteger("wordflinger.physicsRate", 60));
+        long startTime = System.nanoTime();
+        Result[] results = evaluator.evaluateAll(shots);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        
+        System.out.printf("%-24s %6s %8s %8s%n", "shot", "score", "damaged", "ticks");
+        for (Result result : results) {
+            System.out.printf("%-24s %6d %4d/%-3d %8s%n", result.getShot(), result.getScore(),
+                    result.getBlocksDamaged(), result.getBlockCount(),
+                    result.isSettled() ? result.getTicksToSettle() : ">" + result.getTicksToSettle());
+        }
+        System.out.printf("%d shots in %.3f s on %d workers, seed %d%n", results.length, seconds,
+                ForkJoinPool.commonPool().getParallelism(), seed);
+    }
+}
@@ -0,0 +1,426 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the game's levels, flings and physics without a display. The Swing panel runs a
+ * simulation on a SimulationThread and draws snapshots of its objects; headless runs
+ * step it as fast as the CPU allows. No AWT class is loaded until an object is drawn.
+ */
+public class Simulation {
+    // Where flung words start, and how hard their letters are thrown
+    public static final double LAUNCH_X = 50;
+    public static final double LAUNCH_Y = 250;
+    public static final double LETTER_SPACING = 40;
+    public static final double LAUNCH_POWER = 400;
+    public static final double LAUNCH_POWER_PER_LETTER = 20;
+    
+    // Stress mode: flung letters pass through each other and only hit blocks
+    private static final boolean LETTERS_IGNORE_EACH_OTHER = Boolean.getBoolean("wordflinger.stress");
+    
+    // Game objects and the physics world holding their state
+    private final PhysicsWorld world;
+    private final List<GameObject> gameObjects = new ArrayList<>();
+    private final List<Letter> letters = new ArrayList<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<GameObject> removed = new ArrayList<>();
+    private final double stepSeconds;
+    
+    // Game state
+    private int score = 0;
+    private int currentLevel = 1;
+    private long tick = 0;
+    
+    // Whether a completed level is replaced by the next one, or kept so the outcome can
+    // be inspected
+    private boolean autoAdvance = true;
+    private boolean levelComplete = false;
+    
+    /**
+     * Constructs a simulation with a new world, stepping at the rate set by the
+     * wordflinger.physicsRate system property.
+     */
+    public Simulation() {
+        this(new PhysicsWorld(), Integer.getInteger("wordflinger.physicsRate", 60));
+    }
+    
+    /**
+     * Constructs a simulation of the given world, stepping at the given rate.
+     */
+    public Simulation(PhysicsWorld world, double stepsPerSecond) {
+        if (!(stepsPerSecond > 0)) {
+            throw new IllegalArgumentException("Step rate must be positive: " + stepsPerSecond);
+        }
+        this.world = world;
+        this.stepSeconds = 1 / stepsPerSecond;
+    }
+    
+    /**
+     * Sets up blocks for the specified level, removing every existing object.
+     */
+    public void setupLevel(int level) {
+        // Clear existing game objects
+        world.clear();
+        gameObjects.clear();
+        letters.clear();
+        blocks.clear();
+        currentLevel = level;
+        levelComplete = false;
+        
+        // Create different block layouts based on level
+        switch (level) {
+            case 1:
+                // Simple pyramid structure
+                createPyramid(700, 400, 5, 40, 40);
+                break;
+            case 2:
+                // Two columns with platform
+                createColumn(650, 380, 5, 40, 40);
+                createColumn(800, 380, 5, 40, 40);
+                createPlatform(650, 340, 4, 40, 20);
+                break;
+            case 3:
+                // Complex structure
+                createColumn(650, 400, 3, 40, 40);
+                createColumn(750, 400, 3, 40, 40);
+                createColumn(850, 400, 3, 40, 40);
+                createPlatform(650, 280, 6, 40, 20);
+                createPyramid(700, 260, 3, 40, 40);
+                break;
+            default:
+                // Random structure for higher levels, drawn from the world's seed
+                Random random = world.getRandom();
+                int numStructures = 2 + level / 2;
+                for (int i = 0; i < numStructures; i++) {
+                    int structType = random.nextInt(3);
+                    int x = 600 + random.nextInt(300);
+                    int y = 300 + random.nextInt(180);
+                    int size = 2 + random.nextInt(4);
+                    
+                    switch (structType) {
+                        case 0:
+                            createPyramid(x, y, size, 30 + level, 30 + level);
+                            break;
+                        case 1:
+                            createColumn(x, y, size, 30 + level, 30 + level);
+                            break;
+                        case 2:
+                            createPlatform(x, y, size, 40 + level, 20 + level/2);
+                            break;
+                    }
+                }
+                break;
+        }
+        
+        // Add all blocks to game objects list
+        gameObjects.addAll(blocks);
+    }
+    
+    /**
+     * Sets up the current level again.
+     */
+    public void resetLevel() {
+        setupLevel(currentLevel);
+    }
+    
+    /**
+     * Creates a pyramid structure of blocks.
+     */
+    private void createPyramid(int baseX, int baseY, int rows, int blockWidth, int blockHeight) {
+        for (int row = 0; row < rows; row++) {
+            int blocksInRow = rows - row;
+            
+            for (int col = 0; col < blocksInRow; col++) {
+                double x = baseX + (blockWidth * col) - (blockWidth * blocksInRow / 2.0) + (blockWidth / 2.0);
+                double y = baseY - (row * blockHeight);
+                
+                Block block = new Block(world, x, y, blockWidth, blockHeight);
+                blocks.add(block);
+            }
+        }
+    }
+    
+    /**
+     * Creates a column structure of blocks.
+     */
+    private void createColumn(int baseX, int baseY, int height, int blockWidth, int blockHeight) {
+        for (int row = 0; row < height; row++) {
+            double y = baseY - (row * blockHeight);
+            Block block = new Block(world, baseX, y, blockWidth, blockHeight);
+            blocks.add(block);
+        }
+    }
+    
+    /**
+     * Creates a platform structure of blocks.
+     */
+    private void createPlatform(int startX, int y, int length, int blockWidth, int blockHeight) {
+        for (int col = 0; col < length; col++) {
+            double x = startX + (col * blockWidth);
+            Block block = new Block(world, x, y, blockWidth, blockHeight);
+            blocks.add(block);
+        }
+    }
+    
+    /**
+     * Flings a word from the left side of the screen at a slightly random upward angle.
+     */
+    public void flingWord(String word) {
+        fling(word, false, 0, 0, 0, 0);
+    }
+    
+    /**
+     * Flings a word from the left side of the screen in the direction of a drag, from
+     * the start point towards the end point.
+     */
+    public void flingWord(String word, double dragStartX, double dragStartY, double dragEndX, double dragEndY) {
+        fling(word, true, dragStartX, dragStartY, dragEndX, dragEndY);
+    }
+    
+    /**
+     * Creates a letter for each character of the word and launches it.
+     */
+    private void fling(String word, boolean aimed, double dragStartX, double dragStartY,
+                       double dragEndX, double dragEndY) {
+        if (word.isEmpty()) return;
+        
+        // Convert word to uppercase for consistency
+        word = word.toUpperCase();
+        
+        // Create letter objects for each character
+        Random random = world.getRandom();
+        Vector2D.Scratch scratch = Vector2D.Scratch.current();
+        int mark = scratch.mark();
+        Vector2D launchVelocity = scratch.take();
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            
+            // Calculate position with slight offset for each letter
+            double x = LAUNCH_X + i * LETTER_SPACING;
+            double y = LAUNCH_Y + (random.nextDouble() * 10 - 5);
+            
+            // Create letter object
+            Letter letter = new Letter(world, x, y, c);
+            if (LETTERS_IGNORE_EACH_OTHER) {
+                letter.setMask(~Letter.CATEGORY);
+            }
+            
+            // Base power plus increasing power for later letters. The angle is drawn even
+            // for aimed throws, so the same seed gives the same letter offsets either way
+            double power = LAUNCH_POWER + (i * LAUNCH_POWER_PER_LETTER);
+            double angle = -30 + (random.nextDouble() * 20); // Slightly random upward angle
+            
+            if (aimed) {
+                // Use drag vector to determine launch direction
+                PhysicsEngine.calculateLaunchVelocity(
+                    dragStartX, dragStartY, dragEndX, dragEndY, power, launchVelocity);
+                letter.setVelocity(launchVelocity);
+            } else {
+                double radians = Math.toRadians(angle);
+                letter.setVelocityX(power * StrictMath.cos(radians));
+                letter.setVelocityY(power * StrictMath.sin(radians));
+            }
+            
+            // Add letter to lists
+            letters.add(letter);
+            gameObjects.add(letter);
+        }
+        scratch.release(mark);
+    }
+    
+    /**
+     * Advances the game by one physics step, then moves on to the next level if this
+     * one is complete and drops objects that have left the world. Returns whether a
+     * level was completed.
+     */
+    public boolean step() {
+        PhysicsEngine.update(world, stepSeconds);
+        tick++;
+        
+        boolean completed = checkLevelProgress();
+        cleanupInactiveObjects();
+        return completed;
+    }
+    
+    /**
+     * Advances the game by the given number of physics steps.
+     */
+    public void run(int steps) {
+        for (int i = 0; i < steps; i++) {
+            step();
+        }
+    }
+    
+    /**
+     * Checks level progress, setting up the next level if this one is complete.
+     */
+    private boolean checkLevelProgress() {
+        if (levelComplete) return false;
+        
+        // Count active blocks
+        int activeBlocks = 0;
+        int damagedBlocks = 0;
+        
+        for (Block block : blocks) {
+            if (block.isActive()) {
+                activeBlocks++;
+                if (block.isHit() && block.getHealth() < 50) {
+                    damagedBlocks++;
+                }
+            }
+        }
+        
+        // Level is complete if most blocks are damaged or inactive
+        if (activeBlocks > 0 && damagedBlocks >= activeBlocks * 0.7) {
+            score += 100 + (currentLevel * 50);
+            if (autoAdvance) {
+                setupLevel(currentLevel + 1);
+            } else {
+                levelComplete = true;
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Removes inactive game objects from the world and lists.
+     */
+    private void cleanupInactiveObjects() {
+        // Find inactive objects
+        for (GameObject obj : gameObjects) {
+            if (!obj.isActive()) {
+                removed.add(obj);
+            }
+        }
+        if (removed.isEmpty()) return;
+        
+        // Remove inactive objects
+        for (GameObject obj : removed) {
+            world.removeBody(obj);
+        }
+        gameObjects.removeIf(obj -> obj.getHandle() < 0);
+        letters.removeIf(obj -> obj.getHandle() < 0);
+        blocks.removeIf(obj -> obj.getHandle() < 0);
+        removed.clear();
+    }
+    
+    /**
+     * Checks whether every object in the level has come to rest.
+     */
+    public boolean isSettled() {
+        for (GameObject obj : gameObjects) {
+            if (obj.isActive() && !obj.isSleeping()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Sets whether completing a level sets up the next one. When it doesn't, the
+     * completed level stays in place and further progress is not scored.
+     */
+    public void setAutoAdvance(boolean autoAdvance) {
+        this.autoAdvance = autoAdvance;
+    }
+    
+    /**
+     * Checks whether the current level has been completed and kept in place because
+     * levels don't advance automatically.
+     */
+    public boolean isLevelComplete() {
+        return levelComplete;
+    }
+    
+    /**
+     * Gets the world holding the simulated bodies.
+     */
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+    
+    /**
+     * Gets every object in the current level, in the order they were created.
+     */
+    public List<GameObject> getGameObjects() {
+        return gameObjects;
+    }
+    
+    /**
+     * Gets the letters flung in the current level.
+     */
+    public List<Letter> getLetters() {
+        return letters;
+    }
+    
+    /**
+     * Gets the blocks of the current level.
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+    
+    /**
+     * Gets the score.
+     */
+    public int getScore() {
+        return score;
+    }
+    
+    /**
+     * Gets the current level.
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+    
+    /**
+     * Gets the number of steps run so far.
+     */
+    public long getTick() {
+        return tick;
+    }
+    
+    /**
+     * Gets the length of one physics step in seconds.
+     */
+    public double getStepSeconds() {
+        return stepSeconds;
+    }
+    
+    /**
+     * Runs a level headless, flinging each word in turn and simulating it for a number
+     * of steps, then prints the outcome. Run with:
+     * java game.Simulation [level] [steps per word] [word...]
+     */
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        
+        Simulation simulation = new Simulation();
+        simulation.setupLevel(level);
+        
+        long startTime = System.nanoTime();
+        for (int i = 2; i < Math.max(args.length, 3); i++) {
+            simulation.flingWord(i < args.length ? args[i] : "WORD");
+            simulation.run(steps);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        
+        int hitBlocks = 0;
+        for (Block block : simulation.getBlocks()) {
+            if (block.isHit()) hitBlocks++;
+        }
+        PhysicsWorld world = simulation.getWorld();
+        System.out.printf("Level %d, score %d, %d of %d blocks hit, %d bodies%n",
+                simulation.getCurrentLevel(), simulation.getScore(), hitBlocks,
+                simulation.getBlocks().size(), world.getBodyCount());
+        System.out.printf("%d steps in %.3f s (%.0f steps/s), %.2f solver iterations/step%n",
+                simulation.getTick(), seconds, simulation.getTick() / seconds,
+                (double) world.getTotalSolverIterations() / simulation.getTick());
+        System.out.printf("Seed %d, state %016x%n", world.getSeed(), world.stateHash());
+    }
+}
@@ -0,0 +1,154 @@
+package game;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a simulation on its own thread, stepping it in real time. Other threads never
+ * touch the simulation: input reaches it as commands queued for the simulation thread
+ * to run before its next step, and the painter reads render snapshots the simulation
+ * thread publishes through a triple buffer. Neither side ever waits for the other, so a
+ * slow physics step doesn't hold up input or painting, and a slow frame doesn't hold up
+ * the physics.
+ */
+public class SimulationThread {
+    // Longest stretch of time stepped through at once, so a stall doesn't queue up a
+    // burst of steps
+    static final double MAX_FRAME_SECONDS = 0.1;
+    
+    private final Simulation simulation;
+    private final FixedStepClock clock;
+    private final long stepNanos;
+    private final Queue<Consumer<Simulation>> commands = new ConcurrentLinkedQueue<>();
+    private final TripleBuffer<RenderSnapshot> snapshots =
+            new TripleBuffer<>(new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+    
+    private volatile Thread thread;
+    
+    /**
+     * Constructs a runner for a simulation at the given level, publishing its first
+     * snapshot straight away. The simulation must not be used by any other thread from
+     * here on.
+     */
+    public SimulationThread(Simulation simulation, int level) {
+        this.simulation = simulation;
+        this.clock = new FixedStepClock(1 / simulation.getStepSeconds());
+        this.stepNanos = Math.round(simulation.getStepSeconds() * 1e9);
+        simulation.setupLevel(level);
+        publish(System.nanoTime());
+    }
+    
+    /**
+     * Starts stepping the simulation, unless it is already running.
+     */
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "WordFlinger simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops stepping the simulation and waits for the thread to finish. Commands queued
+     * since the last step stay queued until it is started again.
+     */
+    public synchronized void stop() {
+        Thread running = thread;
+        if (running == null) return;
+        thread = null;
+        LockSupport.unpark(running);
+        try {
+            running.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Queues a command to run on the simulation thread before its next step, and wakes
+     * the thread so it runs without waiting for the step to come due.
+     */
+    public void submit(Consumer<Simulation> command) {
+        commands.add(command);
+        Thread running = thread;
+        if (running != null) {
+            LockSupport.unpark(running);
+        }
+    }
+    
+    /**
+     * Flings a word from the left side of the screen at a slightly random upward angle.
+     */
+    public void flingWord(String word) {
+        submit(simulation -> simulation.flingWord(word));
+    }
+    
+    /**
+     * Flings a word in the direction of a drag, from the start point towards the end
+     * point.
+     */
+    public void flingWord(String word, double dragStartX, double dragStartY, double dragEndX, double dragEndY) {
+        submit(simulation -> simulation.flingWord(word, dragStartX, dragStartY, dragEndX, dragEndY));
+    }
+    
+    /**
+     * Sets up the current level again.
+     */
+    public void resetLevel() {
+        submit(Simulation::resetLevel);
+    }
+    
+    /**
+     * Gets the latest snapshot of the simulation, which the caller may draw from until
+     * its next call. Only the painting thread may call this.
+     */
+    RenderSnapshot latestSnapshot() {
+        return snapshots.acquire();
+    }
+    
+    /**
+     * Runs queued commands and steps the simulation as time passes, publishing a
+     * snapshot whenever anything changed, until the thread is stopped.
+     */
+    private void run() {
+        Thread self = Thread.currentThread();
+        long lastTime = System.nanoTime();
+        clock.reset();
+        while (thread == self) {
+            boolean changed = false;
+            Consumer<Simulation> command;
+            while ((command = commands.poll()) != null) {
+                command.accept(simulation);
+                changed = true;
+            }
+            
+            // Step in as many fixed steps as the elapsed time covers
+            long now = System.nanoTime();
+            double frameTime = Math.min((now - lastTime) / 1_000_000_000.0, MAX_FRAME_SECONDS);
+            lastTime = now;
+            int steps = clock.advance(frameTime);
+            for (int step = 0; step < steps; step++) {
+                simulation.step();
+            }
+            
+            // The state is current as of the last whole step, before the leftover time
+            long untilNextStep = Math.round((1 - clock.getAlpha()) * stepNanos);
+            if (steps > 0 || changed) {
+                publish(now - (stepNanos - untilNextStep));
+            }
+            
+            // Sleep until the next step is due, or a command wakes the thread
+            LockSupport.parkNanos(this, untilNextStep);
+        }
+    }
+    
+    /**
+     * Captures the simulation into the snapshot being filled and hands it to the painter.
+     */
+    private void publish(long stateTime) {
+        snapshots.back().capture(simulation, stateTime);
+        snapshots.publish();
+    }
+}
@@ -0,0 +1,67 @@
+package game;
+
+/**
+ * Compares the sequential contact loop against the colored parallel solver on large
+ * tower levels. Run with: java game.SolverBenchmark [towers] [height] [ticks]
+ */
+public class SolverBenchmark {
+    private static final double STEP = 1 / 60.0;
+    private static final double BLOCK_SIZE = 10;
+    
+    /**
+     * Runs the benchmark.
+     */
+    public static void main(String[] args) {
+        int towers = args.length > 0 ? Integer.parseInt(args[0]) : 80;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        
+        System.out.println("Towers: " + towers + " x " + height + " blocks, " + ticks + " ticks, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        
+        // Alternate the solvers so both see the same JIT state
+        for (int round = 0; round < 3; round++) {
+            run("sequential", false, towers, height, ticks);
+            run("colored", true, towers, height, ticks);
+        }
+    }
+    
+    /**
+     * Builds a tower level, throws a row of letters into it and times the physics updates.
+     */
+    private static void run(String name, boolean colored, int towers, int height, int ticks) {
+        PhysicsWorld world = new PhysicsWorld();
+        world.setColoredSolver(colored);
+        world.setParallelThreshold(Integer.MAX_VALUE);
+        
+        double spacing = PhysicsEngine.WORLD_WIDTH / towers;
+        for (int t = 0; t < towers; t++) {
+            for (int row = 0; row < height; row++) {
+                new Block(world, t * spacing + (spacing - BLOCK_SIZE) / 2,
+                        PhysicsEngine.WORLD_HEIGHT - (row + 1) * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE);
+            }
+        }
+        
+        long totalNanos = 0;
+        int contacts = 0, colors = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            if (tick == ticks / 4) {
+                for (int k = 0; k < 20; k++) {
+                    Letter letter = new Letter(world, 20, 100 + k * 15, (char) ('A' + k));
+                    letter.setVelocityX(600);
+                }
+            }
+            
+            PhysicsEngine.update(world, STEP);
+            totalNanos += world.getLastUpdateNanos();
+            if (colored) {
+                contacts = Math.max(contacts, world.coloredSolver.getContactCount());
+                colors = Math.max(colors, world.coloredSolver.getColorCount());
+            }
+        }
+        
+        double iterations = (double) world.getTotalSolverIterations() / ticks;
+        System.out.printf("%-10s %8.3f ms/tick, %.2f iterations/tick%s%n", name, totalNanos / 1e6 / ticks,
+                iterations, colored ? "  (up to " + contacts + " contacts in " + colors + " colors)" : "");
+    }
+}
@@ -0,0 +1,174 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid broadphase. Every tick each body is hashed into the cells its bounds
+ * cover, and only bodies sharing a cell are reported as candidate pairs.
+ */
+public class SpatialHashBroadphase implements Broadphase {
+    // Default cell size; a little larger than a block so most bodies cover 1-4 cells
+    public static final double DEFAULT_CELL_SIZE = 64;
+    
+    private final double cellSize;
+    
+    // Cell entries packed as (cell hash << 32 | body handle), reused between ticks
+    private long[] entries = new long[256];
+    private int entryCount;
+    
+    // Handles found by the last query
+    private int[] results = new int[64];
+    private int resultCount;
+    
+    /**
+     * Constructs a spatial hash with the default cell size.
+     */
+    public SpatialHashBroadphase() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    
+    /**
+     * Constructs a spatial hash with the given cell size.
+     */
+    public SpatialHashBroadphase(double cellSize) {
+        this.cellSize = cellSize;
+    }
+    
+    @Override
+    public void findPairs(PhysicsWorld world, PairBuffer pairs, double margin) {
+        entryCount = 0;
+        
+        // Bucket every active body into the cells it overlaps
+        for (int i = 0; i < world.size; i++) {
+            if (!world.active[i]) continue;
+            
+            int minCellX = (int) Math.floor((world.x[i] - margin) / cellSize);
+            int minCellY = (int) Math.floor((world.y[i] - margin) / cellSize);
+            int maxCellX = (int) Math.floor((world.x[i] + world.width[i] + margin) / cellSize);
+            int maxCellY = (int) Math.floor((world.y[i] + world.height[i] + margin) / cellSize);
+            
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    addEntry(hashCell(cellX, cellY), i);
+                }
+            }
+        }
+        
+        // Sorting groups entries of the same cell next to each other
+        PairBuffer.sort(entries, 0, entryCount);
+        
+        int start = 0;
+        while (start < entryCount) {
+            int cell = (int) (entries[start] >> 32);
+            int end = start + 1;
+            while (end < entryCount && (int) (entries[end] >> 32) == cell) {
+                end++;
+            }
+            
+            // Report every pair in the cell whose bounds come within the margin. Static and
+            // kinematic bodies are only targets, so two of them are never paired
+            for (int a = start; a < end; a++) {
+                int i = (int) entries[a];
+                boolean passive = world.isPassive(i);
+                for (int b = a + 1; b < end; b++) {
+                    int j = (int) entries[b];
+                    if (!(passive && world.isPassive(j)) && boundsOverlap(world, i, j, margin)) {
+                        pairs.add(i, j);
+                    }
+                }
+            }
+            start = end;
+        }
+    }
+    
+    /**
+     * Finds the bodies sharing a cell with the region, looking each cell up in the
+     * entries the last findPairs call sorted. A region covering more cells than there
+     * are entries finds every entry instead.
+     */
+    @Override
+    public int query(PhysicsWorld world, double minX, double minY, double maxX, double maxY) {
+        resultCount = 0;
+        int minCellX = (int) Math.floor(minX / cellSize);
+        int minCellY = (int) Math.floor(minY / cellSize);
+        int maxCellX = (int) Math.floor(maxX / cellSize);
+        int maxCellY = (int) Math.floor(maxY / cellSize);
+        
+        if ((long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > entryCount) {
+            for (int k = 0; k < entryCount; k++) {
+                addResult((int) entries[k]);
+            }
+            return resultCount;
+        }
+        
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                int cell = hashCell(cellX, cellY);
+                for (int k = firstEntry(cell); k < entryCount && (int) (entries[k] >> 32) == cell; k++) {
+                    addResult((int) entries[k]);
+                }
+            }
+        }
+        return resultCount;
+    }
+    
+    @Override
+    public int getResult(int k) {
+        return results[k];
+    }
+    
+    /**
+     * Finds the index of the first sorted entry of a cell, or of the first entry after
+     * where it would be.
+     */
+    private int firstEntry(int cell) {
+        long key = (long) cell << 32;
+        int low = 0, high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Adds a handle to the query results, growing the result array when needed.
+     */
+    private void addResult(int handle) {
+        if (resultCount == results.length) {
+            results = Arrays.copyOf(results, resultCount * 2);
+        }
+        results[resultCount++] = handle;
+    }
+    
+    /**
+     * Adds a cell entry, growing the entry array when needed.
+     */
+    private void addEntry(int cellHash, int handle) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount * 2);
+        }
+        entries[entryCount++] = ((long) cellHash << 32) | handle;
+    }
+    
+    /**
+     * Hashes cell coordinates. Two cells sharing a hash only produce extra candidates.
+     */
+    private static int hashCell(int cellX, int cellY) {
+        return cellX * 73856093 ^ cellY * 19349663;
+    }
+    
+    /**
+     * Checks whether the full (unpadded) bounds of two bodies overlap or are no further
+     * apart than the margin.
+     */
+    static boolean boundsOverlap(PhysicsWorld world, int i, int j, double margin) {
+        double[] x = world.x, y = world.y, width = world.width, height = world.height;
+        return x[i] <= x[j] + width[j] + margin && x[j] <= x[i] + width[i] + margin
+                && y[i] <= y[j] + height[j] + margin && y[j] <= y[i] + height[i] + margin;
+    }
+}
@@ -0,0 +1,192 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Sweep-and-prune broadphase on the x axis. The bodies stay sorted by their left edge
+ * between updates, and since blocks barely move from one tick to the next an insertion
+ * sort restores the order in close to linear time.
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+    // Proxies sorted by left edge: the body's handle, owner and cached bounds
+    private int[] handles = new int[64];
+    private GameObject[] owners = new GameObject[64];
+    private double[] minX = new double[64];
+    private double[] maxX = new double[64];
+    private double[] minY = new double[64];
+    private double[] maxY = new double[64];
+    private int count = 0;
+    
+    // Widest proxy, so a query knows how far left of its region to start
+    private double maxWidth;
+    
+    // Handles found by the last query
+    private int[] results = new int[64];
+    private int resultCount;
+    
+    // Owner of each handle when its proxy was added, to spot new and reused handles
+    private GameObject[] tracked = new GameObject[64];
+    
+    @Override
+    public void findPairs(PhysicsWorld world, PairBuffer pairs, double margin) {
+        if (tracked.length < world.size) {
+            tracked = Arrays.copyOf(tracked, world.bodies.length);
+        }
+        
+        // Drop proxies of removed bodies before adding the new ones, so a level that is
+        // cleared and rebuilt doesn't briefly need room for both
+        removeStaleProxies(world);
+        
+        // Add proxies for bodies created since the last update
+        for (int i = 0; i < world.size; i++) {
+            GameObject body = world.bodies[i];
+            if (body != null && tracked[i] != body) {
+                tracked[i] = body;
+                addProxy(i, body, world.x[i]);
+            }
+        }
+        
+        refreshBounds(world);
+        insertionSort();
+        
+        // Sweep: only bodies whose x intervals come within the margin can collide
+        boolean[] active = world.active;
+        for (int a = 0; a < count; a++) {
+            if (!active[handles[a]]) continue;
+            
+            // Static and kinematic bodies are only targets, so two of them are never paired
+            boolean passive = world.isPassive(handles[a]);
+            for (int b = a + 1; b < count && minX[b] <= maxX[a] + margin; b++) {
+                if (minY[a] <= maxY[b] + margin && minY[b] <= maxY[a] + margin
+                        && active[handles[b]] && !(passive && world.isPassive(handles[b]))) {
+                    pairs.add(handles[a], handles[b]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the bodies whose bounds overlap the region, using the left-edge order the
+     * last findPairs call left the proxies in.
+     */
+    @Override
+    public int query(PhysicsWorld world, double regionMinX, double regionMinY,
+                     double regionMaxX, double regionMaxY) {
+        resultCount = 0;
+        
+        // No proxy further left than its widest can reach the region
+        double start = regionMinX - maxWidth;
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (minX[mid] < start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        for (int k = low; k < count && minX[k] <= regionMaxX; k++) {
+            if (maxX[k] >= regionMinX && minY[k] <= regionMaxY && maxY[k] >= regionMinY) {
+                if (resultCount == results.length) {
+                    results = Arrays.copyOf(results, resultCount * 2);
+                }
+                results[resultCount++] = handles[k];
+            }
+        }
+        return resultCount;
+    }
+    
+    @Override
+    public int getResult(int k) {
+        return results[k];
+    }
+    
+    /**
+     * Appends a proxy for a new body; the next insertion sort moves it into place.
+     */
+    private void addProxy(int handle, GameObject owner, double left) {
+        if (count == handles.length) {
+            int capacity = count * 2;
+            handles = Arrays.copyOf(handles, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        handles[count] = handle;
+        owners[count] = owner;
+        minX[count] = left;
+        count++;
+    }
+    
+    /**
+     * Drops proxies of removed bodies, keeping the rest in order.
+     */
+    private void removeStaleProxies(PhysicsWorld world) {
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            int handle = handles[k];
+            if (handle < world.size && world.bodies[handle] == owners[k]) {
+                handles[kept] = handle;
+                owners[kept] = owners[k];
+                minX[kept] = minX[k];
+                kept++;
+            } else if (tracked[handle] == owners[k]) {
+                tracked[handle] = null;
+            }
+        }
+        
+        // Clear references so removed objects can be collected
+        Arrays.fill(owners, kept, count, null);
+        count = kept;
+    }
+    
+    /**
+     * Copies the current bounds of every body into the proxy arrays.
+     */
+    private void refreshBounds(PhysicsWorld world) {
+        maxWidth = 0;
+        for (int k = 0; k < count; k++) {
+            int handle = handles[k];
+            minX[k] = world.x[handle];
+            maxX[k] = world.x[handle] + world.width[handle];
+            minY[k] = world.y[handle];
+            maxY[k] = world.y[handle] + world.height[handle];
+            maxWidth = Math.max(maxWidth, world.width[handle]);
+        }
+    }
+    
+    /**
+     * Restores the left-edge order. Nearly sorted input makes this close to linear.
+     */
+    private void insertionSort() {
+        for (int k = 1; k < count; k++) {
+            int handle = handles[k];
+            GameObject owner = owners[k];
+            double proxyMinX = minX[k];
+            double proxyMaxX = maxX[k];
+            double proxyMinY = minY[k];
+            double proxyMaxY = maxY[k];
+            
+            int m = k - 1;
+            while (m >= 0 && minX[m] > proxyMinX) {
+                handles[m + 1] = handles[m];
+                owners[m + 1] = owners[m];
+                minX[m + 1] = minX[m];
+                maxX[m + 1] = maxX[m];
+                minY[m + 1] = minY[m];
+                maxY[m + 1] = maxY[m];
+                m--;
+            }
+            
+            handles[m + 1] = handle;
+            owners[m + 1] = owner;
+            minX[m + 1] = proxyMinX;
+            maxX[m + 1] = proxyMaxX;
+            minY[m + 1] = proxyMinY;
+            maxY[m + 1] = proxyMaxY;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands values from one writing thread to one reading thread without either ever
+ * waiting for the other. Of three buffers, the writer fills one, the reader reads one,
+ * and the third holds the latest value published. Publishing swaps the written buffer
+ * with the third, and acquiring swaps the read buffer with it if it holds something
+ * newer, so the reader always gets the latest value and never one still being written.
+ * Values the reader didn't get to in time are skipped.
+ */
+class TripleBuffer<T> {
+    // Set in the shared slot when it holds a value the reader hasn't taken yet
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+    
+    private final Object[] buffers;
+    
+    // Buffer owned by the writer, buffer owned by the reader, and the shared one
+    private int back = 0;
+    private int front = 1;
+    private final AtomicInteger middle = new AtomicInteger(2);
+    
+    /**
+     * Constructs a triple buffer over three distinct buffers. The reader starts with
+     * the second until something is published.
+     */
+    TripleBuffer(T first, T second, T third) {
+        if (first == second || second == third || first == third) {
+            throw new IllegalArgumentException("Triple buffer needs three distinct buffers");
+        }
+        buffers = new Object[] { first, second, third };
+    }
+    
+    /**
+     * Gets the buffer the writer fills next. Only the writing thread may call this.
+     */
+    @SuppressWarnings("unchecked")
+    T back() {
+        return (T) buffers[back];
+    }
+    
+    /**
+     * Publishes the filled buffer to the reader and gives the writer another one.
+     * Only the writing thread may call this.
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+    
+    /**
+     * Gets the latest published buffer, which stays the reader's until its next call.
+     * Only the reading thread may call this.
+     */
+    @SuppressWarnings("unchecked")
+    T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return (T) buffers[front];
+    }
+}
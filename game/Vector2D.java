@@ -1,5 +1,7 @@
 package game;
 
+import java.util.Arrays;
+
 /**
  * A 2D vector class for physics calculations.
  */
@@ -43,6 +45,22 @@ public class Vector2D {
         this.y = y;
     }
     
+    /**
+     * Sets both components, returning this vector.
+     */
+    public Vector2D set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+    
+    /**
+     * Copies another vector's components, returning this vector.
+     */
+    public Vector2D set(Vector2D other) {
+        return set(other.x, other.y);
+    }
+    
     /**
      * Adds another vector to this vector.
      */
@@ -50,6 +68,21 @@ public class Vector2D {
         return new Vector2D(this.x + other.x, this.y + other.y);
     }
     
+    /**
+     * Adds another vector to this vector, storing the sum in out and returning it. Out
+     * may be either vector.
+     */
+    public Vector2D add(Vector2D other, Vector2D out) {
+        return out.set(this.x + other.x, this.y + other.y);
+    }
+    
+    /**
+     * Adds another vector to this vector in place, returning this vector.
+     */
+    public Vector2D addLocal(Vector2D other) {
+        return add(other, this);
+    }
+    
     /**
      * Subtracts another vector from this vector.
      */
@@ -57,6 +90,21 @@ public class Vector2D {
         return new Vector2D(this.x - other.x, this.y - other.y);
     }
     
+    /**
+     * Subtracts another vector from this vector, storing the difference in out and
+     * returning it. Out may be either vector.
+     */
+    public Vector2D subtract(Vector2D other, Vector2D out) {
+        return out.set(this.x - other.x, this.y - other.y);
+    }
+    
+    /**
+     * Subtracts another vector from this vector in place, returning this vector.
+     */
+    public Vector2D subtractLocal(Vector2D other) {
+        return subtract(other, this);
+    }
+    
     /**
      * Multiplies this vector by a scalar.
      */
@@ -64,6 +112,21 @@ public class Vector2D {
         return new Vector2D(this.x * scalar, this.y * scalar);
     }
     
+    /**
+     * Multiplies this vector by a scalar, storing the product in out and returning it.
+     * Out may be this vector.
+     */
+    public Vector2D multiply(double scalar, Vector2D out) {
+        return out.set(this.x * scalar, this.y * scalar);
+    }
+    
+    /**
+     * Multiplies this vector by a scalar in place, returning this vector.
+     */
+    public Vector2D multiplyLocal(double scalar) {
+        return multiply(scalar, this);
+    }
+    
     /**
      * Calculates the dot product of this vector and another vector.
      */
@@ -82,11 +145,26 @@ public class Vector2D {
      * Normalizes this vector (makes it unit length).
      */
     public Vector2D normalize() {
+        return normalize(new Vector2D(0, 0));
+    }
+    
+    /**
+     * Stores this vector scaled to unit length in out and returns it, or stores zero if
+     * this vector has no length. Out may be this vector.
+     */
+    public Vector2D normalize(Vector2D out) {
         double mag = magnitude();
         if (mag > 0) {
-            return new Vector2D(x / mag, y / mag);
+            return out.set(x / mag, y / mag);
         }
-        return new Vector2D(0, 0);
+        return out.set(0, 0);
+    }
+    
+    /**
+     * Normalizes this vector in place, returning this vector.
+     */
+    public Vector2D normalizeLocal() {
+        return normalize(this);
     }
     
     /**
@@ -96,4 +174,59 @@ public class Vector2D {
     public String toString() {
         return "Vector2D(" + x + ", " + y + ")";
     }
+    
+    /**
+     * A per-thread stack of reusable vectors for hot paths that need temporaries. Take
+     * vectors after noting the mark, and release back to it when done:
+     * <pre>
+     * Vector2D.Scratch scratch = Vector2D.Scratch.current();
+     * int mark = scratch.mark();
+     * Vector2D v = scratch.take();
+     * ...
+     * scratch.release(mark);
+     * </pre>
+     * A taken vector holds whatever it was last set to, and must not be kept after its
+     * release or handed to another thread.
+     */
+    public static final class Scratch {
+        private static final ThreadLocal<Scratch> CURRENT = ThreadLocal.withInitial(Scratch::new);
+        
+        private Vector2D[] vectors = new Vector2D[0];
+        private int top = 0;
+        
+        /**
+         * Gets the calling thread's scratch stack.
+         */
+        public static Scratch current() {
+            return CURRENT.get();
+        }
+        
+        /**
+         * Takes a vector off the stack, allocating one only the first time the stack
+         * grows this deep.
+         */
+        public Vector2D take() {
+            if (top == vectors.length) {
+                vectors = Arrays.copyOf(vectors, Math.max(8, top * 2));
+                for (int k = top; k < vectors.length; k++) {
+                    vectors[k] = new Vector2D(0, 0);
+                }
+            }
+            return vectors[top++];
+        }
+        
+        /**
+         * Gets the current depth of the stack, to release back to later.
+         */
+        public int mark() {
+            return top;
+        }
+        
+        /**
+         * Returns every vector taken since the mark to the stack.
+         */
+        public void release(int mark) {
+            top = mark;
+        }
+    }
 }
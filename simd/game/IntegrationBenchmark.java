@@ -0,0 +1,97 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Checks the Vector API integration kernel against the scalar loop and times both at
+ * 1k, 10k and 100k bodies. Build and run with the vector module, for example:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp . -d . simd/game/*.java
+ *   java --add-modules jdk.incubator.vector game.IntegrationBenchmark
+ */
+public class IntegrationBenchmark {
+    private static final double STEP = 1 / 60.0;
+    private static final int CHECK_STEPS = 200;
+    private static final double TOLERANCE = 1e-9;
+    
+    /**
+     * Runs the check and the benchmark.
+     */
+    public static void main(String[] args) {
+        IntegrationKernel vector = new VectorIntegrationKernel();
+        double drag = Math.pow(PhysicsEngine.DRAG, STEP / PhysicsEngine.DRAG_STEP);
+        
+        for (int bodies : new int[] {1_000, 10_000, 100_000}) {
+            // Both kernels integrate the same bodies for a while and must end up together
+            PhysicsWorld scalarWorld = createWorld(bodies);
+            PhysicsWorld vectorWorld = createWorld(bodies);
+            for (int step = 0; step < CHECK_STEPS; step++) {
+                PhysicsEngine.integrateRange(scalarWorld, 0, scalarWorld.size, STEP, drag);
+                vector.integrate(vectorWorld, STEP, drag);
+            }
+            double error = maxDifference(scalarWorld, vectorWorld);
+            
+            // Enough repetitions to integrate about 20 million bodies per kernel
+            int repetitions = Math.max(20, 20_000_000 / bodies);
+            double scalarNanos = Double.MAX_VALUE, vectorNanos = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (int r = 0; r < repetitions; r++) {
+                    PhysicsEngine.integrateRange(scalarWorld, 0, scalarWorld.size, STEP, drag);
+                }
+                scalarNanos = Math.min(scalarNanos, (System.nanoTime() - start) / (double) repetitions);
+                
+                start = System.nanoTime();
+                for (int r = 0; r < repetitions; r++) {
+                    vector.integrate(vectorWorld, STEP, drag);
+                }
+                vectorNanos = Math.min(vectorNanos, (System.nanoTime() - start) / (double) repetitions);
+            }
+            
+            System.out.printf("%7d bodies: scalar %9.1f us/step, vector %9.1f us/step, speedup %.2fx, max error %.2e%s%n",
+                    bodies, scalarNanos / 1000, vectorNanos / 1000, scalarNanos / vectorNanos, error,
+                    error <= TOLERANCE ? "" : "  MISMATCH");
+        }
+    }
+    
+    /**
+     * Creates a world of blocks with random positions and velocities, some asleep, some
+     * inactive and some without a speed limit. Bodies start far above the floor so they
+     * stay active while the benchmark runs.
+     */
+    private static PhysicsWorld createWorld(int bodies) {
+        PhysicsWorld world = new PhysicsWorld();
+        Random random = new Random(bodies);
+        for (int k = 0; k < bodies; k++) {
+            Block block = new Block(world, random.nextDouble() * PhysicsEngine.WORLD_WIDTH,
+                    -random.nextDouble() * 1_000_000, 20, 20);
+            block.setVelocityX(random.nextGaussian() * 400);
+            block.setVelocityY(random.nextGaussian() * 400);
+            if (k % 10 == 0) {
+                block.sleep();
+            } else if (k % 17 == 0) {
+                block.setActive(false);
+            } else if (k % 5 == 0) {
+                world.maxSpeed[block.getHandle()] = Double.POSITIVE_INFINITY;
+            }
+        }
+        return world;
+    }
+    
+    /**
+     * Gets the largest difference between the bodies of two worlds.
+     */
+    private static double maxDifference(PhysicsWorld a, PhysicsWorld b) {
+        double error = 0;
+        for (int i = 0; i < a.size; i++) {
+            if (a.active[i] != b.active[i]) return Double.POSITIVE_INFINITY;
+            error = Math.max(error, Math.abs(a.x[i] - b.x[i]));
+            error = Math.max(error, Math.abs(a.y[i] - b.y[i]));
+            error = Math.max(error, Math.abs(a.velocityX[i] - b.velocityX[i]));
+            error = Math.max(error, Math.abs(a.velocityY[i] - b.velocityY[i]));
+            error = Math.max(error, Math.abs(a.previousX[i] - b.previousX[i]));
+            error = Math.max(error, Math.abs(a.previousY[i] - b.previousY[i]));
+        }
+        return error;
+    }
+}
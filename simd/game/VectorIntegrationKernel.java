@@ -0,0 +1,72 @@
+package game;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Integration kernel using the incubating Java Vector API. It is kept out of the main
+ * source tree so the game builds without the module; compile and run it with
+ * --add-modules jdk.incubator.vector, for example:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp . -d . simd/game/*.java
+ *   java --add-modules jdk.incubator.vector WordFlingerGame
+ *
+ * PhysicsEngine picks it up when it is on the class path.
+ */
+class VectorIntegrationKernel implements IntegrationKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    /**
+     * Integrates a full vector of bodies at a time, using lane masks to leave asleep
+     * and inactive bodies in place, then the remaining bodies with the scalar loop.
+     */
+    @Override
+    public void integrate(PhysicsWorld world, double deltaTime, double drag) {
+        double[] x = world.x, y = world.y;
+        double[] velocityX = world.velocityX, velocityY = world.velocityY;
+        double[] maxSpeed = world.maxSpeed;
+        boolean[] active = world.active, sleeping = world.sleeping;
+        double gravityStep = PhysicsEngine.GRAVITY * deltaTime;
+        
+        int bound = SPECIES.loopBound(world.size);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector px = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector py = DoubleVector.fromArray(SPECIES, y, i);
+            px.intoArray(world.previousX, i);
+            py.intoArray(world.previousY, i);
+            
+            VectorMask<Double> isActive = VectorMask.fromArray(SPECIES, active, i);
+            VectorMask<Double> moving = isActive.andNot(VectorMask.fromArray(SPECIES, sleeping, i));
+            if (!moving.anyTrue()) continue;
+            
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, velocityX, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, velocityY, i);
+            
+            // Update position based on velocity
+            DoubleVector nextX = px.add(vx.mul(deltaTime));
+            DoubleVector nextY = py.add(vy.mul(deltaTime));
+            
+            // Apply gravity and drag, then limit speed per axis
+            DoubleVector limit = DoubleVector.fromArray(SPECIES, maxSpeed, i);
+            DoubleVector negativeLimit = limit.neg();
+            DoubleVector nextVelocityX = vx.mul(drag).max(negativeLimit).min(limit);
+            DoubleVector nextVelocityY = vy.add(gravityStep).mul(drag).max(negativeLimit).min(limit);
+            
+            // Lanes of bodies that are asleep or inactive keep their old values
+            px.blend(nextX, moving).intoArray(x, i);
+            py.blend(nextY, moving).intoArray(y, i);
+            vx.blend(nextVelocityX, moving).intoArray(velocityX, i);
+            vy.blend(nextVelocityY, moving).intoArray(velocityY, i);
+            
+            // If body is out of bounds, deactivate it
+            VectorMask<Double> fell = nextY.compare(VectorOperators.GT, PhysicsEngine.WORLD_HEIGHT).and(moving);
+            if (fell.anyTrue()) {
+                isActive.andNot(fell).intoArray(active, i);
+            }
+        }
+        
+        PhysicsEngine.integrateRange(world, bound, world.size, deltaTime, drag);
+    }
+}